@@ -0,0 +1,226 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.gametest;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.mojang.logging.LogUtils;
+import life.thoms.mods.wandering_collector.constants.ModConstants;
+import life.thoms.mods.wandering_collector.utils.LatencyHistogram;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.packs.resources.Resource;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Compares the tick durations of stress scenarios against stored baselines and reports them.
+ *
+ * <p>Baselines are read from data/wandering_collector/gametest/mspt_baselines.json, so a datapack can override them
+ * for a specific machine. A scenario regresses when one of its percentiles exceeds the baseline by more than the
+ * tolerance, which can be overridden with the wandering_collector.gametest.tolerance system property.</p>
+ *
+ * <p>When the wandering_collector.gametest.requireBaselines system property is true, set by "-PstressTests",
+ * a scenario without a baseline fails instead of only being reported. When wandering_collector.gametest.recordBaselines
+ * names a file, set by "-PrecordBaselines", the measured percentiles are written to it as the new baselines
+ * of their scenario and nothing fails.</p>
+ *
+ * <p>Every measured scenario is written to gametest-reports/wandering_collector_mspt.json in the server directory.</p>
+ */
+public class MsptBaselines {
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final ResourceLocation BASELINES = new ResourceLocation(ModConstants.MOD_ID, "gametest/mspt_baselines.json");
+    private static final String REPORT_DIRECTORY = "gametest-reports";
+    private static final String REPORT_FILE = ModConstants.MOD_ID + "_mspt.json";
+    private static final String TOLERANCE_PROPERTY = ModConstants.MOD_ID + ".gametest.tolerance";
+    private static final String REQUIRE_PROPERTY = ModConstants.MOD_ID + ".gametest.requireBaselines";
+    private static final String RECORD_PROPERTY = ModConstants.MOD_ID + ".gametest.recordBaselines";
+    private static final double DEFAULT_TOLERANCE = 0.25;
+    private static final double[] PERCENTILES = {50, 95, 99};
+
+    private static final JsonObject REPORTED_SCENARIOS = new JsonObject();
+
+    /**
+     * Reports the tick durations of a scenario and checks them against its baseline.
+     *
+     * @param server    The server the scenario ran on, used to read the baselines.
+     * @param scenario  The name of the scenario.
+     * @param tickTimes The tick durations recorded while the scenario ran.
+     * @return A description of every percentile above its baseline, or of the missing baseline when baselines are
+     *         required, empty if the scenario passed.
+     */
+    public static synchronized List<String> check(MinecraftServer server, String scenario, LatencyHistogram.Snapshot tickTimes) {
+        String recordFile = System.getProperty(RECORD_PROPERTY);
+        boolean recording = recordFile != null && !recordFile.isBlank();
+        JsonObject baselines = readBaselines(server);
+        double tolerance = getTolerance(baselines);
+        JsonObject baseline = !recording && baselines.has("scenarios") && baselines.getAsJsonObject("scenarios").has(scenario)
+                ? baselines.getAsJsonObject("scenarios").getAsJsonObject(scenario)
+                : new JsonObject();
+
+        List<String> regressions = new ArrayList<>();
+        if (!recording && baseline.isEmpty()) {
+            if (Boolean.getBoolean(REQUIRE_PROPERTY)) {
+                regressions.add("no baseline, record one with -PrecordBaselines");
+            } else {
+                LOGGER.info("No MSPT baseline for stress scenario {}, it is only reported", scenario);
+            }
+        }
+        JsonObject measured = new JsonObject();
+        measured.addProperty("ticks", tickTimes.count());
+        measured.addProperty("mean_ms", toMillis(tickTimes.meanNanos()));
+        for (double percentile : PERCENTILES) {
+            String key = "p" + (int) percentile;
+            double millis = toMillis(tickTimes.percentileNanos(percentile));
+            measured.addProperty(key + "_ms", millis);
+
+            if (baseline.has(key)) {
+                double limit = baseline.get(key).getAsDouble() * (1 + tolerance);
+                if (millis > limit) {
+                    regressions.add(String.format("%s %.2f ms exceeds %.2f ms", key, millis, limit));
+                }
+            }
+        }
+        measured.addProperty("max_ms", toMillis(tickTimes.maxNanos()));
+
+        JsonObject result = new JsonObject();
+        result.add("measured", measured);
+        result.add("baseline", baseline);
+        result.addProperty("tolerance", tolerance);
+        result.addProperty("passed", regressions.isEmpty());
+        REPORTED_SCENARIOS.add(scenario, result);
+
+        LOGGER.info("Stress scenario {}: {} ticks, mean {} ms, p50 {} ms, p95 {} ms, p99 {} ms, max {} ms",
+                scenario, tickTimes.count(), measured.get("mean_ms"), measured.get("p50_ms"),
+                measured.get("p95_ms"), measured.get("p99_ms"), measured.get("max_ms"));
+        writeReport(server.getServerDirectory().toPath().resolve(REPORT_DIRECTORY).resolve(REPORT_FILE));
+        if (recording) {
+            recordBaseline(Path.of(recordFile), scenario, measured);
+        }
+        return regressions;
+    }
+
+    /**
+     * Writes the measured percentiles of a scenario as its baseline, keeping the baselines of the other scenarios.
+     *
+     * @param baselinesFile The baselines file to update, in the gametest source set.
+     * @param scenario      The name of the scenario.
+     * @param measured      The measured tick durations of the scenario.
+     */
+    private static void recordBaseline(Path baselinesFile, String scenario, JsonObject measured) {
+        try {
+            JsonObject baselines = new JsonObject();
+            if (Files.exists(baselinesFile)) {
+                JsonElement stored = JsonParser.parseString(Files.readString(baselinesFile, StandardCharsets.UTF_8));
+                if (stored.isJsonObject()) {
+                    baselines = stored.getAsJsonObject();
+                }
+            }
+            if (!baselines.has("tolerance")) {
+                baselines.addProperty("tolerance", DEFAULT_TOLERANCE);
+            }
+            if (!baselines.has("scenarios")) {
+                baselines.add("scenarios", new JsonObject());
+            }
+
+            JsonObject baseline = new JsonObject();
+            for (double percentile : PERCENTILES) {
+                String key = "p" + (int) percentile;
+                baseline.add(key, measured.get(key + "_ms"));
+            }
+            baselines.getAsJsonObject("scenarios").add(scenario, baseline);
+            Files.writeString(baselinesFile, new GsonBuilder().setPrettyPrinting().create().toJson(baselines) + "\n", StandardCharsets.UTF_8);
+            LOGGER.info("Recorded MSPT baseline of stress scenario {} to {}", scenario, baselinesFile.toAbsolutePath());
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to record MSPT baseline of stress scenario {} to {}", scenario, baselinesFile.toAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Reads the baselines from the server's data packs.
+     *
+     * @param server The server whose resources are read.
+     * @return The baselines, empty if they are missing or can't be read.
+     */
+    private static JsonObject readBaselines(MinecraftServer server) {
+        Optional<Resource> resource = server.getResourceManager().getResource(BASELINES);
+        if (resource.isEmpty()) {
+            LOGGER.warn("No MSPT baselines found at {}, stress scenarios are only reported", BASELINES);
+            return new JsonObject();
+        }
+        try (Reader reader = resource.get().openAsReader()) {
+            JsonElement baselines = JsonParser.parseReader(reader);
+            return baselines.isJsonObject() ? baselines.getAsJsonObject() : new JsonObject();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to read MSPT baselines from {}", BASELINES, e);
+            return new JsonObject();
+        }
+    }
+
+    /**
+     * Retrieves the allowed relative regression, from the system property or the baselines file.
+     *
+     * @param baselines The baselines.
+     * @return The tolerance, 0.25 allowing percentiles 25% above their baseline.
+     */
+    private static double getTolerance(JsonObject baselines) {
+        String property = System.getProperty(TOLERANCE_PROPERTY);
+        if (property != null) {
+            try {
+                return Double.parseDouble(property);
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Ignoring invalid {} value {}", TOLERANCE_PROPERTY, property);
+            }
+        }
+        return baselines.has("tolerance") ? baselines.get("tolerance").getAsDouble() : DEFAULT_TOLERANCE;
+    }
+
+    /**
+     * Writes every scenario measured so far to the report file.
+     *
+     * @param report The report file, in the server directory.
+     */
+    private static void writeReport(Path report) {
+        try {
+            Files.createDirectories(report.getParent());
+            Files.writeString(report, new GsonBuilder().setPrettyPrinting().create().toJson(REPORTED_SCENARIOS), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write MSPT report to {}", report.toAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Converts nanoseconds to milliseconds, rounded to hundredths.
+     *
+     * @param nanos The duration in nanoseconds.
+     * @return The duration in milliseconds.
+     */
+    private static double toMillis(double nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.gametest;
+
+import life.thoms.mods.wandering_collector.constants.ModConstants;
+import life.thoms.mods.wandering_collector.data.LootEntry;
+import life.thoms.mods.wandering_collector.data.LootPersistenceManager;
+import life.thoms.mods.wandering_collector.helpers.PlayerLootDataHelper;
+import life.thoms.mods.wandering_collector.helpers.TraderSummoningHelper;
+import life.thoms.mods.wandering_collector.utils.LatencyHistogram;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.gametest.framework.GameTest;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.InteractionHand;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.EntityType;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.entity.npc.WanderingTrader;
+import net.minecraft.world.item.EnchantedBookItem;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.item.enchantment.EnchantmentInstance;
+import net.minecraft.world.item.enchantment.Enchantments;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.phys.BlockHitResult;
+import net.minecraft.world.phys.Vec3;
+import net.minecraftforge.gametest.GameTestHolder;
+import net.minecraftforge.gametest.PrefixGameTestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Stress scenarios measuring the server tick cost of the mod under heavy load.
+ *
+ * <p>Lives in the gametest source set, which is only loaded by the game test server run. Run them headless with
+ * "gradlew runGameTestServer", or as part of "gradlew check -PstressTests". Each scenario runs in its own batch
+ * so no other test shares its ticks, records the duration of every tick with {@link TickCostRecorder}, and fails
+ * if the tick percentiles regress past the {@link MsptBaselines} measured for it. Record the baselines on the
+ * reference machine with "gradlew runGameTestServer -PrecordBaselines".</p>
+ */
+@GameTestHolder(ModConstants.MOD_ID)
+@PrefixGameTestTemplate(false)
+public class StressGameTests {
+
+    private static final String PLATFORM = "stress_platform";
+    private static final int TIMEOUT_TICKS = 400;
+    private static final int MEASURED_TICKS = 100;
+    private static final int PLAYERS = 16;
+    private static final int DESPAWNED_ITEMS = 4000;
+    private static final int SUMMONED_VILLAGES = 8;
+    private static final BlockPos CENTER = new BlockPos(7, 1, 7);
+    private static final int POOL_RADIUS = 4;
+
+    /**
+     * Kills players with full valuable inventories in lava, so their drops are registered and burn.
+     *
+     * @param helper the game test helper
+     */
+    @GameTest(template = PLATFORM, batch = "wandering_collector_lava_deaths", timeoutTicks = TIMEOUT_TICKS)
+    public static void lavaDeaths(GameTestHelper helper) {
+        List<ServerPlayer> players = new ArrayList<>();
+        helper.startSequence()
+                .thenExecute(() -> {
+                    fillLavaPool(helper);
+                    for (int i = 0; i < PLAYERS; i++) {
+                        ServerPlayer player = helper.makeMockServerPlayerInLevel();
+                        fillInventory(player);
+                        Vec3 poolPos = helper.absoluteVec(Vec3.atBottomCenterOf(CENTER));
+                        player.teleportTo(poolPos.x(), poolPos.y(), poolPos.z());
+                        players.add(player);
+                    }
+                    TickCostRecorder.start();
+                    for (ServerPlayer player : players) {
+                        player.setHealth(0);
+                        player.die(helper.getLevel().damageSources().lava());
+                    }
+                })
+                .thenIdle(MEASURED_TICKS)
+                .thenExecute(() -> {
+                    LatencyHistogram.Snapshot tickTimes = TickCostRecorder.stop();
+                    boolean captured = players.stream().anyMatch(player -> getLootSize(helper, player.getUUID()) > 0);
+                    cleanUp(helper, players);
+                    checkBaseline(helper, "lava_deaths", tickTimes);
+                    helper.assertTrue(captured, "No burned death drops were captured");
+                })
+                .thenSucceed();
+    }
+
+    /**
+     * Makes thousands of owned item entities expire in the same tick.
+     *
+     * @param helper the game test helper
+     */
+    @GameTest(template = PLATFORM, batch = "wandering_collector_mass_despawn", timeoutTicks = TIMEOUT_TICKS)
+    public static void massDespawn(GameTestHelper helper) {
+        List<ServerPlayer> players = new ArrayList<>();
+        helper.startSequence()
+                .thenExecute(() -> {
+                    ServerPlayer owner = helper.makeMockServerPlayerInLevel();
+                    players.add(owner);
+                    TickCostRecorder.start();
+
+                    ServerLevel level = helper.getLevel();
+                    List<ItemStack> stacks = createValuableStacks();
+                    for (int i = 0; i < DESPAWNED_ITEMS; i++) {
+                        Vec3 pos = helper.absoluteVec(new Vec3(1.5 + i % 13, 2.2, 1.5 + (i / 13) % 13));
+                        ItemEntity itemEntity = new ItemEntity(level, pos.x(), pos.y(), pos.z(), stacks.get(i % stacks.size()).copy());
+                        itemEntity.setThrower(owner);
+                        itemEntity.setNeverPickUp();
+                        itemEntity.lifespan = 1;
+                        level.addFreshEntity(itemEntity);
+                    }
+                })
+                .thenIdle(MEASURED_TICKS)
+                .thenExecute(() -> {
+                    LatencyHistogram.Snapshot tickTimes = TickCostRecorder.stop();
+                    boolean captured = getLootSize(helper, players.get(0).getUUID()) > 0;
+                    cleanUp(helper, players);
+                    checkBaseline(helper, "mass_despawn", tickTimes);
+                    helper.assertTrue(captured, "No expired items were captured");
+                })
+                .thenSucceed();
+    }
+
+    /**
+     * Makes players with lost items open and close a Wandering Trader's offers every tick.
+     *
+     * @param helper the game test helper
+     */
+    @GameTest(template = PLATFORM, batch = "wandering_collector_trader_interactions", timeoutTicks = TIMEOUT_TICKS)
+    public static void traderInteractions(GameTestHelper helper) {
+        List<ServerPlayer> players = new ArrayList<>();
+        List<WanderingTrader> traders = new ArrayList<>();
+        helper.startSequence()
+                .thenExecute(() -> {
+                    traders.add(helper.spawnWithNoFreeWill(EntityType.WANDERING_TRADER, CENTER));
+                    long gameTime = helper.getLevel().getGameTime();
+                    for (int i = 0; i < PLAYERS; i++) {
+                        ServerPlayer player = helper.makeMockServerPlayerInLevel();
+                        LootPersistenceManager.updatePlayerLoot(helper.getLevel().getServer(), player.getUUID(), playerLoot -> {
+                            for (ItemStack stack : createValuableStacks()) {
+                                PlayerLootDataHelper.addNewItemToPlayerLoot(playerLoot, LootEntry.capture(stack, player.getUUID(), gameTime));
+                            }
+                        });
+                        players.add(player);
+                    }
+                    TickCostRecorder.start();
+                })
+                .thenExecuteFor(MEASURED_TICKS, () -> {
+                    for (ServerPlayer player : players) {
+                        player.interactOn(traders.get(0), InteractionHand.MAIN_HAND);
+                        player.closeContainer();
+                    }
+                })
+                .thenExecute(() -> {
+                    LatencyHistogram.Snapshot tickTimes = TickCostRecorder.stop();
+                    cleanUp(helper, players);
+                    checkBaseline(helper, "trader_interactions", tickTimes);
+                })
+                .thenSucceed();
+    }
+
+    /**
+     * Makes players ring a bell with an emerald every tick, and summons traders for a few villages
+     * until they are all on cooldown.
+     *
+     * <p>The test platform has no village, so ringing the bell measures the village lookup while the summons
+     * are requested directly.</p>
+     *
+     * @param helper the game test helper
+     */
+    @GameTest(template = PLATFORM, batch = "wandering_collector_bell_summons", timeoutTicks = TIMEOUT_TICKS)
+    public static void bellSummons(GameTestHelper helper) {
+        List<ServerPlayer> players = new ArrayList<>();
+        BlockPos bellPos = helper.absolutePos(CENTER);
+        long firstVillageId = helper.getLevel().getRandom().nextLong();
+        helper.startSequence()
+                .thenExecute(() -> {
+                    helper.setBlock(CENTER, Blocks.BELL);
+                    for (int i = 0; i < PLAYERS; i++) {
+                        ServerPlayer player = helper.makeMockServerPlayerInLevel();
+                        player.setItemInHand(InteractionHand.MAIN_HAND, new ItemStack(Items.EMERALD, 64));
+                        players.add(player);
+                    }
+                    TickCostRecorder.start();
+                })
+                .thenExecuteFor(MEASURED_TICKS, () -> {
+                    ServerLevel level = helper.getLevel();
+                    BlockHitResult hitResult = new BlockHitResult(Vec3.atCenterOf(bellPos), Direction.NORTH, bellPos, false);
+                    for (int i = 0; i < players.size(); i++) {
+                        ServerPlayer player = players.get(i);
+                        player.gameMode.useItemOn(player, level, player.getMainHandItem(), InteractionHand.MAIN_HAND, hitResult);
+                        TraderSummoningHelper.summonTrader(firstVillageId + i % SUMMONED_VILLAGES, bellPos, level, level.getGameTime(), player);
+                    }
+                })
+                .thenExecute(() -> {
+                    LatencyHistogram.Snapshot tickTimes = TickCostRecorder.stop();
+                    TraderSummoningHelper.clear();
+                    for (WanderingTrader trader : helper.getLevel().getEntities(EntityType.WANDERING_TRADER, Entity::isAlive)) {
+                        trader.discard();
+                    }
+                    cleanUp(helper, players);
+                    checkBaseline(helper, "bell_summons", tickTimes);
+                })
+                .thenSucceed();
+    }
+
+    /**
+     * Reports the tick durations of a scenario and fails the test if they regressed past its baseline,
+     * or if it has none while baselines are required.
+     *
+     * @param helper    the game test helper
+     * @param scenario  the name of the scenario
+     * @param tickTimes the tick durations recorded while the scenario ran
+     */
+    private static void checkBaseline(GameTestHelper helper, String scenario, LatencyHistogram.Snapshot tickTimes) {
+        List<String> regressions = MsptBaselines.check(helper.getLevel().getServer(), scenario, tickTimes);
+        if (!regressions.isEmpty()) {
+            helper.fail("MSPT check failed for " + scenario + ": " + String.join(", ", regressions));
+        }
+    }
+
+    /**
+     * Replaces the inside of the platform's rim with lava.
+     *
+     * @param helper the game test helper
+     */
+    private static void fillLavaPool(GameTestHelper helper) {
+        for (int x = -POOL_RADIUS; x <= POOL_RADIUS; x++) {
+            for (int z = -POOL_RADIUS; z <= POOL_RADIUS; z++) {
+                helper.setBlock(CENTER.offset(x, 0, z), Blocks.LAVA);
+            }
+        }
+    }
+
+    /**
+     * Fills every inventory slot of a player with valuable stacks.
+     *
+     * @param player the player whose inventory is filled
+     */
+    private static void fillInventory(ServerPlayer player) {
+        List<ItemStack> stacks = createValuableStacks();
+        for (int slot = 0; slot < player.getInventory().items.size(); slot++) {
+            player.getInventory().items.set(slot, stacks.get(slot % stacks.size()).copy());
+        }
+    }
+
+    /**
+     * Creates a mix of valuable stacks, both stackable and enchanted.
+     *
+     * @return the stacks
+     */
+    private static List<ItemStack> createValuableStacks() {
+        ItemStack pickaxe = new ItemStack(Items.NETHERITE_PICKAXE);
+        pickaxe.enchant(Enchantments.EFFICIENCY, 5);
+        pickaxe.enchant(Enchantments.UNBREAKING, 3);
+        ItemStack chestplate = new ItemStack(Items.DIAMOND_CHESTPLATE);
+        chestplate.enchant(Enchantments.PROTECTION, 4);
+
+        return List.of(
+                new ItemStack(Items.DIAMOND, 64),
+                new ItemStack(Items.NETHERITE_INGOT, 64),
+                new ItemStack(Items.GOLDEN_APPLE, 64),
+                new ItemStack(Items.ENDER_PEARL, 16),
+                new ItemStack(Items.DIAMOND_SWORD),
+                pickaxe,
+                chestplate,
+                EnchantedBookItem.createForEnchantment(new EnchantmentInstance(Enchantments.MENDING, 1))
+        );
+    }
+
+    /**
+     * Retrieves the number of loot entries of a player.
+     *
+     * @param helper     the game test helper
+     * @param playerUUID the UUID of the player
+     * @return the number of loot entries
+     */
+    private static int getLootSize(GameTestHelper helper, UUID playerUUID) {
+        return LootPersistenceManager.computePlayerLoot(helper.getLevel().getServer(), playerUUID, playerLoot -> playerLoot.size());
+    }
+
+    /**
+     * Disconnects the mock players and removes the item entities left in the test area.
+     *
+     * @param helper  the game test helper
+     * @param players the mock players of the scenario
+     */
+    private static void cleanUp(GameTestHelper helper, List<ServerPlayer> players) {
+        for (ServerPlayer player : players) {
+            helper.getLevel().getServer().getPlayerList().remove(player);
+        }
+        helper.killAllEntitiesOfClass(ItemEntity.class);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.gametest;
+
+import life.thoms.mods.wandering_collector.utils.LatencyHistogram;
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.TickEvent;
+
+/**
+ * Records the duration of every server tick while a stress scenario is running.
+ *
+ * <p>The listener is only added to the event bus the first time a scenario is recorded,
+ * so servers that don't run the stress tests never see it. Scenarios run in separate batches,
+ * so at most one is recorded at a time.</p>
+ */
+public class TickCostRecorder {
+
+    private static final LatencyHistogram TICK_TIMES = new LatencyHistogram();
+    private static boolean listening = false;
+    private static boolean recording = false;
+    private static long tickStart = 0;
+
+    /**
+     * Starts recording tick durations, discarding the ticks recorded for the previous scenario.
+     */
+    public static synchronized void start() {
+        if (!listening) {
+            MinecraftForge.EVENT_BUS.addListener(TickCostRecorder::onServerTick);
+            listening = true;
+        }
+        TICK_TIMES.reset();
+        tickStart = 0;
+        recording = true;
+    }
+
+    /**
+     * Stops recording tick durations.
+     *
+     * @return The durations of the ticks that completed while recording.
+     */
+    public static synchronized LatencyHistogram.Snapshot stop() {
+        recording = false;
+        return TICK_TIMES.snapshot();
+    }
+
+    /**
+     * Times the server tick between its start and end phases.
+     *
+     * @param serverTickEvent the event triggered at the start and end of every server tick
+     */
+    private static void onServerTick(TickEvent.ServerTickEvent serverTickEvent) {
+        if (!recording) return;
+
+        if (serverTickEvent.phase == TickEvent.Phase.START) {
+            tickStart = System.nanoTime();
+        } else if (tickStart != 0) {
+            TICK_TIMES.recordSince(tickStart);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.benchmarks;
+
+import com.electronwill.nightconfig.core.CommentedConfig;
+import life.thoms.mods.wandering_collector.config.WanderingCollectorConfig;
+import life.thoms.mods.wandering_collector.data.LootEntry;
+import life.thoms.mods.wandering_collector.data.PlayerLootLedger;
+import life.thoms.mods.wandering_collector.helpers.ItemValueFilter;
+import life.thoms.mods.wandering_collector.helpers.StackPriceCalculator;
+import life.thoms.mods.wandering_collector.utils.ConfiguredPriceTable;
+import life.thoms.mods.wandering_collector.utils.ItemClassificationTable;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.EnchantedBookItem;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.item.enchantment.EnchantmentInstance;
+import net.minecraft.world.item.enchantment.Enchantments;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Sets up the vanilla registries and the mod's config and lookup tables without starting a server.
+ *
+ * <p>Item tags are not bound outside of a server, so VALUABLE_TAG_IDS entries and tag based item classifications
+ * resolve to nothing. The prices and filters still go through the same lookup tables as in game.</p>
+ */
+public class BenchmarkBootstrap {
+
+    private static final long SEED = 0x5EED;
+    private static boolean bootstrapped = false;
+
+    /**
+     * Bootstraps the registries and loads the default config, only once per JVM.
+     */
+    public static synchronized void bootstrap() {
+        if (bootstrapped) return;
+
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+
+        CommentedConfig config = CommentedConfig.inMemory();
+        WanderingCollectorConfig.SPEC.correct(config);
+        WanderingCollectorConfig.SPEC.acceptConfig(config);
+        ItemClassificationTable.rebuild();
+        rebuildTables();
+        bootstrapped = true;
+    }
+
+    /**
+     * Replaces VALUABLE_ITEM_IDS with the given number of entries and rebuilds the lookup tables,
+     * the same way a config reload does.
+     *
+     * @param configSize The number of VALUABLE_ITEM_IDS entries.
+     */
+    public static void configureValuableItems(int configSize) {
+        List<String> itemIds = new ArrayList<>(configSize);
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (Item item : BuiltInRegistries.ITEM) {
+            if (itemIds.size() >= configSize) break;
+            if (item == Items.AIR) continue;
+            itemIds.add(BuiltInRegistries.ITEM.getKey(item) + "/" + random.nextInt(1, 64));
+        }
+        WanderingCollectorConfig.VALUABLE_ITEM_IDS.set(itemIds);
+        rebuildTables();
+    }
+
+    /**
+     * Creates a mix of stacks resembling what players lose: ordinary blocks, valuable materials,
+     * gear with and without enchantments, enchanted books and configured items.
+     *
+     * @param count The number of stacks to create.
+     * @return The stacks, in a fixed pseudo-random order.
+     */
+    public static ItemStack[] createLostStacks(int count) {
+        ItemStack[] templates = {
+                new ItemStack(Items.COBBLESTONE, 64),
+                new ItemStack(Items.DIRT, 37),
+                new ItemStack(Items.ROTTEN_FLESH, 12),
+                new ItemStack(Items.DIAMOND, 5),
+                new ItemStack(Items.NETHERITE_INGOT, 2),
+                new ItemStack(Items.GOLDEN_APPLE, 8),
+                new ItemStack(Items.ENDER_PEARL, 16),
+                new ItemStack(Items.DIAMOND_SWORD),
+                enchant(new ItemStack(Items.NETHERITE_PICKAXE), 3),
+                enchant(new ItemStack(Items.IRON_CHESTPLATE), 1),
+                EnchantedBookItem.createForEnchantment(new EnchantmentInstance(Enchantments.MENDING, 1)),
+                new ItemStack(Items.WOODEN_SHOVEL)
+        };
+        SplittableRandom random = new SplittableRandom(SEED);
+        ItemStack[] stacks = new ItemStack[count];
+        for (int i = 0; i < count; i++) {
+            stacks[i] = templates[random.nextInt(templates.length)].copy();
+        }
+        return stacks;
+    }
+
+    /**
+     * Creates a ledger filled with captured copies of the given stacks.
+     *
+     * @param owner The UUID of the player who owns the loot.
+     * @param size  The number of entries.
+     * @return The filled ledger.
+     */
+    public static PlayerLootLedger createLedger(UUID owner, int size) {
+        PlayerLootLedger ledger = new PlayerLootLedger();
+        for (ItemStack stack : createLostStacks(size)) {
+            ledger.add(LootEntry.capture(stack, owner, 0L));
+        }
+        return ledger;
+    }
+
+    /**
+     * Retrieves the registry lookup used to encode and decode stacks.
+     *
+     * @return The lookup of the built-in registries.
+     */
+    public static HolderLookup.Provider getRegistries() {
+        return RegistryAccess.fromRegistryOfRegistries(BuiltInRegistries.REGISTRY);
+    }
+
+    /**
+     * Rebuilds the config dependent lookup tables.
+     */
+    private static void rebuildTables() {
+        ConfiguredPriceTable.rebuild();
+        StackPriceCalculator.rebuild();
+        ItemValueFilter.rebuild();
+    }
+
+    /**
+     * Adds enchantments to a stack.
+     *
+     * @param stack        The stack to enchant.
+     * @param enchantments The number of enchantments to add, at most 3.
+     * @return The enchanted stack.
+     */
+    private static ItemStack enchant(ItemStack stack, int enchantments) {
+        stack.enchant(Enchantments.UNBREAKING, 3);
+        if (enchantments > 1) stack.enchant(Enchantments.MENDING, 1);
+        if (enchantments > 2) stack.enchant(Enchantments.EFFICIENCY, 5);
+        return stack;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.benchmarks;
+
+import life.thoms.mods.wandering_collector.data.LootEntry;
+import life.thoms.mods.wandering_collector.data.PlayerLootLedger;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures looking up stack identifiers in a player's loot, which replaced scanning the loot list
+ * for a matching identifier.
+ *
+ * <p>Half of the looked up identifiers are in the ledger, the other half are not.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LedgerLookupBenchmark {
+
+    private static final int LOOKUPS = 1024;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int ledgerSize;
+
+    private PlayerLootLedger ledger;
+    private UUID[] identifiers;
+
+    /**
+     * Fills the ledger and picks the identifiers to look up.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkBootstrap.bootstrap();
+        ledger = BenchmarkBootstrap.createLedger(UUID.randomUUID(), ledgerSize);
+
+        List<UUID> ids = ledger.getEntries().stream().map(LootEntry::getId).toList();
+        SplittableRandom random = new SplittableRandom(ledgerSize);
+        identifiers = new UUID[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            identifiers[i] = i % 2 == 0 ? ids.get(random.nextInt(ids.size())) : UUID.randomUUID();
+        }
+    }
+
+    /**
+     * Checks whether each identifier is in the ledger.
+     *
+     * @return The number of identifiers found, so the lookups aren't eliminated.
+     */
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int contains() {
+        int found = 0;
+        for (UUID identifier : identifiers) {
+            if (ledger.contains(identifier)) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
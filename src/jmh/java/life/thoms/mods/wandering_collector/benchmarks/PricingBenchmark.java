@@ -0,0 +1,93 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.benchmarks;
+
+import life.thoms.mods.wandering_collector.helpers.ItemValueFilter;
+import life.thoms.mods.wandering_collector.helpers.StackPriceCalculator;
+import life.thoms.mods.wandering_collector.utils.ItemFilterUtil;
+import net.minecraft.world.item.ItemStack;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the lookups run for every despawned stack: filtering, configured prices and stack pricing.
+ *
+ * <p>Each invocation goes through a fixed mix of lost stacks, with VALUABLE_ITEM_IDS holding configSize entries.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PricingBenchmark {
+
+    private static final int STACKS = 1024;
+
+    @Param({"50", "200", "500"})
+    public int configSize;
+
+    private ItemStack[] stacks;
+
+    /**
+     * Bootstraps the registries and configures the valuable items.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkBootstrap.bootstrap();
+        BenchmarkBootstrap.configureValuableItems(configSize);
+        stacks = BenchmarkBootstrap.createLostStacks(STACKS);
+    }
+
+    /**
+     * Prices every stack of the mix.
+     *
+     * @param blackhole Consumes the prices.
+     */
+    @Benchmark
+    @OperationsPerInvocation(STACKS)
+    public void getStackPrice(Blackhole blackhole) {
+        for (ItemStack stack : stacks) {
+            blackhole.consume(StackPriceCalculator.getStackPrice(stack));
+        }
+    }
+
+    /**
+     * Filters every stack of the mix.
+     *
+     * @param blackhole Consumes the filter results.
+     */
+    @Benchmark
+    @OperationsPerInvocation(STACKS)
+    public void filterValuableItems(Blackhole blackhole) {
+        for (ItemStack stack : stacks) {
+            blackhole.consume(ItemValueFilter.filterValuableItems(stack));
+        }
+    }
+
+    /**
+     * Looks up the configured price of every stack of the mix.
+     *
+     * @param blackhole Consumes the configured prices.
+     */
+    @Benchmark
+    @OperationsPerInvocation(STACKS)
+    public void getConfiguredPrice(Blackhole blackhole) {
+        for (ItemStack stack : stacks) {
+            blackhole.consume(ItemFilterUtil.getConfiguredPrice(stack));
+        }
+    }
+}
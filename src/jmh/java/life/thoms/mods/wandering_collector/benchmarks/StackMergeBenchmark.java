@@ -0,0 +1,112 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.benchmarks;
+
+import life.thoms.mods.wandering_collector.data.LootEntry;
+import life.thoms.mods.wandering_collector.data.LootExpiryScheduler;
+import life.thoms.mods.wandering_collector.data.PlayerLootLedger;
+import life.thoms.mods.wandering_collector.helpers.PlayerLootDataHelper;
+import net.minecraft.world.item.ItemStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures merging despawned stackable stacks into a player's loot.
+ *
+ * <p>Every invocation merges the same batch of stacks into a ledger of ledgerSize entries. The ledger is built once
+ * per trial and restored after every invocation by removing the entries the batch split off and resetting the counts
+ * of the entries it merged into, so the ledger measured stays the one in the parameters. The restore allocates next to
+ * nothing, so the allocations reported by the gc profiler are the merges' own. Entries the batch merged into rejoin
+ * the open entry index at its end, which can change the order later batches fill them in.</p>
+ *
+ * <p>Each merged stack is copied first since merging changes its count, the copy is included in the measured time
+ * and allocations.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StackMergeBenchmark {
+
+    private static final int STACKS = 256;
+
+    @Param({"10", "1000"})
+    public int ledgerSize;
+
+    private final UUID owner = UUID.randomUUID();
+    private PlayerLootLedger ledger;
+    private LootEntry[] pristineEntries;
+    private int[] pristineCounts;
+    private Set<UUID> pristineIds;
+    private ItemStack[] stacks;
+    private long gameTime;
+
+    /**
+     * Bootstraps the registries, picks the stackable stacks to merge and builds the ledger.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkBootstrap.bootstrap();
+        stacks = Arrays.stream(BenchmarkBootstrap.createLostStacks(STACKS * 4))
+                .filter(ItemStack::isStackable)
+                .limit(STACKS)
+                .toArray(ItemStack[]::new);
+
+        LootExpiryScheduler.clear();
+        ledger = BenchmarkBootstrap.createLedger(owner, ledgerSize);
+        pristineEntries = ledger.getEntries().toArray(LootEntry[]::new);
+        pristineCounts = new int[pristineEntries.length];
+        pristineIds = new HashSet<>();
+        for (int i = 0; i < pristineEntries.length; i++) {
+            pristineCounts[i] = pristineEntries[i].getCount();
+            pristineIds.add(pristineEntries[i].getId());
+        }
+    }
+
+    /**
+     * Restores the ledger built for the trial after every invocation, and drops the expiries scheduled for the
+     * entries the batch split off.
+     */
+    @TearDown(Level.Invocation)
+    public void restoreLedger() {
+        ledger.removeIf(entry -> !pristineIds.contains(entry.getId()));
+        for (int i = 0; i < pristineEntries.length; i++) {
+            if (pristineEntries[i].getCount() != pristineCounts[i]) {
+                ledger.setCount(pristineEntries[i], pristineCounts[i]);
+            }
+        }
+        LootExpiryScheduler.clear();
+    }
+
+    /**
+     * Merges the batch of stacks into the ledger.
+     *
+     * @return The ledger, so the merges aren't eliminated.
+     */
+    @Benchmark
+    @OperationsPerInvocation(STACKS)
+    public PlayerLootLedger handleStackableLoot() {
+        for (ItemStack stack : stacks) {
+            PlayerLootDataHelper.handleStackableLoot(ledger, stack.copy(), owner, gameTime++);
+        }
+        return ledger;
+    }
+}
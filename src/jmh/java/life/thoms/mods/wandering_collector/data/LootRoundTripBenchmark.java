@@ -0,0 +1,109 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.data;
+
+import life.thoms.mods.wandering_collector.benchmarks.BenchmarkBootstrap;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtAccounter;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.world.item.ItemStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding a player's loot into a compressed loot file and decoding it back into a ledger.
+ *
+ * <p>Lives in the data package to use the same encoding and decoding as {@link LootPersistenceService}
+ * and {@link LootPersistenceManager}. Files are written to memory, so disk speed is not measured.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LootRoundTripBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int ledgerSize;
+
+    private final UUID owner = UUID.randomUUID();
+    private HolderLookup.Provider provider;
+    private Map<UUID, ItemStack> snapshot;
+    private byte[] savedFile;
+
+    /**
+     * Fills a ledger, snapshots it the same way a save does, and encodes it once for the load benchmark.
+     *
+     * @throws IOException If the loot file can't be encoded.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        BenchmarkBootstrap.bootstrap();
+        provider = BenchmarkBootstrap.getRegistries();
+
+        PlayerLootLedger ledger = BenchmarkBootstrap.createLedger(owner, ledgerSize);
+        snapshot = new LinkedHashMap<>();
+        for (LootEntry entry : ledger.getEntries()) {
+            snapshot.put(entry.getId(), entry.getStack().copy());
+        }
+        savedFile = save();
+    }
+
+    /**
+     * Encodes and compresses the loot.
+     *
+     * @return The compressed loot file.
+     * @throws IOException If the loot file can't be encoded.
+     */
+    @Benchmark
+    public byte[] save() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        NbtIo.writeCompressed(LootPersistenceService.encode(snapshot, provider), output);
+        return output.toByteArray();
+    }
+
+    /**
+     * Decompresses and decodes the loot into a ledger.
+     *
+     * @return The decoded ledger.
+     * @throws IOException If the loot file can't be decoded.
+     */
+    @Benchmark
+    public PlayerLootLedger load() throws IOException {
+        CompoundTag fileData = NbtIo.readCompressed(new ByteArrayInputStream(savedFile), NbtAccounter.unlimitedHeap());
+        return LootPersistenceManager.decodePlayerLoot(LootPersistenceService.decode(fileData), owner, provider);
+    }
+
+    /**
+     * Saves the loot and loads it back.
+     *
+     * @return The decoded ledger.
+     * @throws IOException If the loot file can't be encoded or decoded.
+     */
+    @Benchmark
+    public PlayerLootLedger roundTrip() throws IOException {
+        byte[] file = save();
+        CompoundTag fileData = NbtIo.readCompressed(new ByteArrayInputStream(file), NbtAccounter.unlimitedHeap());
+        return LootPersistenceManager.decodePlayerLoot(LootPersistenceService.decode(fileData), owner, provider);
+    }
+}
@@ -51,5 +51,9 @@ public class WanderingCollector {
         modEventBus.register(ItemDespawnEvents.class);
         modEventBus.register(PlayerEvents.class);
         modEventBus.register(WanderingTraderEvents.class);
+        modEventBus.register(DataReloadEvents.class);
+        modEventBus.register(ServerTickEvents.class);
+        modEventBus.register(ChunkEvents.class);
+        modEventBus.register(CommandEvents.class);
     }
 }
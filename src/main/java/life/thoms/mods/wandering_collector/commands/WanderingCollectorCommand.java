@@ -0,0 +1,112 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.commands;
+
+import com.mojang.brigadier.CommandDispatcher;
+import life.thoms.mods.wandering_collector.constants.ModConstants;
+import life.thoms.mods.wandering_collector.utils.LatencyHistogram;
+import life.thoms.mods.wandering_collector.utils.ModMetrics;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The /wandering_collector command, giving operators access to the mod's metrics.
+ */
+public class WanderingCollectorCommand {
+
+    private static final int LARGEST_LEDGERS_SHOWN = 5;
+
+    /**
+     * Registers the command.
+     *
+     * @param dispatcher The server's command dispatcher.
+     */
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal(ModConstants.MOD_ID)
+                .requires(source -> source.hasPermission(2))
+                .then(Commands.literal("stats")
+                        .executes(context -> showStats(context.getSource()))
+                        .then(Commands.literal("reset")
+                                .executes(context -> resetStats(context.getSource())))));
+    }
+
+    /**
+     * Shows the counters, latencies and largest loot ledgers.
+     *
+     * @param source The source running the command.
+     * @return The command result.
+     */
+    private static int showStats(CommandSourceStack source) {
+        if (!ModMetrics.isEnabled()) {
+            source.sendFailure(Component.literal("Metrics are disabled, set METRICS_ENABLED in the config to record them"));
+            return 0;
+        }
+
+        for (Map.Entry<String, LongAdder> counter : ModMetrics.getCounters().entrySet()) {
+            String line = counter.getKey() + ": " + counter.getValue().sum();
+            source.sendSuccess(() -> Component.literal(line), false);
+        }
+        for (Map.Entry<String, LatencyHistogram> histogram : ModMetrics.getHistograms().entrySet()) {
+            LatencyHistogram.Snapshot snapshot = histogram.getValue().snapshot();
+            String line = String.format("%s: n=%d mean=%.3fms p50=%.3fms p99=%.3fms max=%.3fms",
+                    histogram.getKey(), snapshot.count(), toMillis(snapshot.meanNanos()),
+                    toMillis(snapshot.percentileNanos(50)), toMillis(snapshot.percentileNanos(99)),
+                    toMillis(snapshot.maxNanos()));
+            source.sendSuccess(() -> Component.literal(line), false);
+        }
+
+        Map<UUID, Integer> ledgerSizes = ModMetrics.getLedgerSizes();
+        int totalEntries = ledgerSizes.values().stream().mapToInt(Integer::intValue).sum();
+        String ledgersLine = "loaded ledgers: " + ledgerSizes.size() + ", entries: " + totalEntries;
+        source.sendSuccess(() -> Component.literal(ledgersLine), false);
+        ledgerSizes.entrySet().stream()
+                .sorted(Map.Entry.<UUID, Integer>comparingByValue().reversed())
+                .limit(LARGEST_LEDGERS_SHOWN)
+                .forEach(ledgerSize -> {
+                    String line = "  " + ledgerSize.getKey() + ": " + ledgerSize.getValue();
+                    source.sendSuccess(() -> Component.literal(line), false);
+                });
+        return 1;
+    }
+
+    /**
+     * Clears the counters and latencies.
+     *
+     * @param source The source running the command.
+     * @return The command result.
+     */
+    private static int resetStats(CommandSourceStack source) {
+        ModMetrics.reset();
+        source.sendSuccess(() -> Component.literal("Wandering Collector metrics reset"), true);
+        return 1;
+    }
+
+    /**
+     * Converts nanoseconds to milliseconds.
+     *
+     * @param nanos The duration in nanoseconds.
+     * @return The duration in milliseconds.
+     */
+    private static double toMillis(double nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -16,6 +16,8 @@
 
 package life.thoms.mods.wandering_collector.config;
 
+import life.thoms.mods.wandering_collector.data.MetricsExporter;
+import life.thoms.mods.wandering_collector.helpers.LostItemOfferSelector;
 import net.minecraftforge.common.ForgeConfigSpec;
 
 import java.util.List;
@@ -34,6 +36,18 @@ public class WanderingCollectorConfig {
     public static final ForgeConfigSpec.ConfigValue<List<? extends String>> VALUABLE_ITEM_IDS;
     public static final ForgeConfigSpec.ConfigValue<List<? extends String>> VALUABLE_TAG_IDS;
     public static final ForgeConfigSpec.LongValue ITEM_DISPOSAL_TIME;
+    public static final ForgeConfigSpec.IntValue LOOT_CAPTURE_BUDGET_PER_TICK;
+    public static final ForgeConfigSpec.IntValue MAX_LOST_ITEM_OFFERS_PER_PLAYER;
+    public static final ForgeConfigSpec.EnumValue<LostItemOfferSelector.Mode> LOST_ITEM_OFFER_SELECTION;
+    public static final ForgeConfigSpec.BooleanValue METRICS_ENABLED;
+    public static final ForgeConfigSpec.EnumValue<MetricsExporter.Format> METRICS_EXPORT_FORMAT;
+    public static final ForgeConfigSpec.IntValue METRICS_EXPORT_INTERVAL;
+    public static final ForgeConfigSpec.BooleanValue CAPTURE_EXPIRED_ITEMS;
+    public static final ForgeConfigSpec.BooleanValue CAPTURE_VOID_ITEMS;
+    public static final ForgeConfigSpec.BooleanValue CAPTURE_BURNED_ITEMS;
+    public static final ForgeConfigSpec.BooleanValue CAPTURE_DESTROYED_ITEMS;
+    public static final ForgeConfigSpec.BooleanValue CAPTURE_KILLED_ITEMS;
+    public static final ForgeConfigSpec.BooleanValue CAPTURE_OTHER_REMOVED_ITEMS;
     public static final ForgeConfigSpec.LongValue TRADER_SUMMONING_COOLDOWN_DURATION;
     public static final ForgeConfigSpec.ShortValue PROBABILITY_OF_LOST_ITEM_IN_TRADE;
     public static final ForgeConfigSpec.ShortValue BASE_PRICE_OF_LOST_ITEM_IN_TRADE;
@@ -65,6 +79,36 @@ public class WanderingCollectorConfig {
                 .comment("List of valuable item tags/price. Use Minecraft namespace format (e.g. forge:gems/4).")
                 .comment("Can also use modded tags (e.g. alexmobs:chestplates/25)")
                 .defineList("VALUABLE_TAG_IDS", List.of(), value -> value instanceof String);
+
+        LOOT_CAPTURE_BUDGET_PER_TICK = builder
+                .comment("Maximum number of despawned stacks added to player loot per tick, the rest waits for the next ticks")
+                .defineInRange("LOOT_CAPTURE_BUDGET_PER_TICK", 256, 1, Integer.MAX_VALUE);
+        builder.pop();
+
+        builder.push("Despawn Capture Config");
+        CAPTURE_EXPIRED_ITEMS = builder
+                .comment("Capture items that despawned after lying on the ground for too long")
+                .define("CAPTURE_EXPIRED_ITEMS", true);
+
+        CAPTURE_VOID_ITEMS = builder
+                .comment("Capture items that fell into the void")
+                .define("CAPTURE_VOID_ITEMS", true);
+
+        CAPTURE_BURNED_ITEMS = builder
+                .comment("Capture items that burned in fire or lava")
+                .define("CAPTURE_BURNED_ITEMS", true);
+
+        CAPTURE_DESTROYED_ITEMS = builder
+                .comment("Capture items destroyed by damage such as cactus or explosions")
+                .define("CAPTURE_DESTROYED_ITEMS", true);
+
+        CAPTURE_KILLED_ITEMS = builder
+                .comment("Capture items removed by commands such as /kill")
+                .define("CAPTURE_KILLED_ITEMS", false);
+
+        CAPTURE_OTHER_REMOVED_ITEMS = builder
+                .comment("Capture items removed for any other reason, such as by other mods clearing items")
+                .define("CAPTURE_OTHER_REMOVED_ITEMS", false);
         builder.pop();
 
         builder.push("Item Expiration Config");
@@ -88,12 +132,36 @@ public class WanderingCollectorConfig {
                 .comment("Probability % on any item to be added as trade on wandering trader every cooldown refresh default \"15\"")
                 .defineInRange("PROBABILITY_OF_LOST_ITEM_IN_TRADE", (short) 15, (short) 0, (short) 100);
 
+        MAX_LOST_ITEM_OFFERS_PER_PLAYER = builder
+                .comment("Maximum number of lost items a wandering trader offers to a single player (default: \"32\")")
+                .defineInRange("MAX_LOST_ITEM_OFFERS_PER_PLAYER", 32, 1, 1024);
+
+        LOST_ITEM_OFFER_SELECTION = builder
+                .comment("How lost items are picked for trades: RANDOM picks each item with PROBABILITY_OF_LOST_ITEM_IN_TRADE,")
+                .comment("choosing evenly among them past the maximum, VALUE_WEIGHTED picks the same amount of items on average,")
+                .comment("favouring the most valuable")
+                .defineEnum("LOST_ITEM_OFFER_SELECTION", LostItemOfferSelector.Mode.RANDOM);
+
         BASE_PRICE_OF_LOST_ITEM_IN_TRADE = builder
                 .comment("Base price of item trades in emeralds, will be influenced by item type and enchantments")
                 .comment("(default: \"4\") (min: 1) (it should be what you consider a diamond is worth), netherite is double")
                 .defineInRange("BASE_PRICE_OF_LOST_ITEM_IN_TRADE", (short) 4, (short) 1, Short.MAX_VALUE);
         builder.pop();
 
+        builder.push("Metrics Config");
+        METRICS_ENABLED = builder
+                .comment("Record counters and timings of the mod's work, shown by /wandering_collector stats")
+                .define("METRICS_ENABLED", false);
+
+        METRICS_EXPORT_FORMAT = builder
+                .comment("Periodically write the metrics to the world's wandering_collector folder: NONE, PROMETHEUS or JSON")
+                .defineEnum("METRICS_EXPORT_FORMAT", MetricsExporter.Format.NONE);
+
+        METRICS_EXPORT_INTERVAL = builder
+                .comment("Minecraft ticks between two metrics exports (default: \"1200\", 1 minute)")
+                .defineInRange("METRICS_EXPORT_INTERVAL", 1200, 20, Integer.MAX_VALUE);
+        builder.pop();
+
         SPEC = builder.build();
     }
 }
@@ -16,12 +16,11 @@
 
 package life.thoms.mods.wandering_collector.constants;
 
-import net.minecraft.world.item.ItemStack;
+import life.thoms.mods.wandering_collector.data.PlayerLootLedger;
 
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class containing constant values and keys used in the Wandering Collector mod.
@@ -30,8 +29,7 @@ public class ModConstants {
 
     public static final String MOD_ID = "wandering_collector";
 
-    public static final Map<UUID, List<ItemStack>> SERVER_LOOT = new HashMap<>();
-    public static final Map<Long, Long> VILLAGE_SUMMON_COOLDOWN = new HashMap<>();
+    public static final Map<UUID, PlayerLootLedger> SERVER_LOOT = new ConcurrentHashMap<>();
 
     public static final String PLAYER_LOOT_KEY = "playerLootPersistence";
     public static final String STACK_UUID = "item_stack_uuid";
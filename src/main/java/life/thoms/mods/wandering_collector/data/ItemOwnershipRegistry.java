@@ -0,0 +1,144 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.data;
+
+import life.thoms.mods.wandering_collector.constants.ModConstants;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.world.entity.item.ItemEntity;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Registry of the owners of item entities dropped by players on death or tossed by them, keyed by entity UUID.
+ *
+ * <p>Ownership belongs to the item entity rather than its stack, so stacks are never rewritten and the despawn
+ * handler resolves an owner with a single lookup. Entries are removed when their entity leaves the level and
+ * expire once the entity should have despawned, in case its removal was never seen.</p>
+ *
+ * <p>The owner is also written to the entity's persistent data, so ownership survives the entity being unloaded
+ * with its chunk and is registered again when the entity is loaded. It is the fallback for entities that outlived
+ * their entry, such as items kept alive by another mod past their lifespan.</p>
+ *
+ * <p>Only used on the server thread.</p>
+ */
+public class ItemOwnershipRegistry {
+
+    private static final long EXPIRY_MARGIN = 6000L;
+    private static final long PRUNE_INTERVAL = 1200L;
+
+    private static final Map<UUID, Ownership> OWNERS = new HashMap<>();
+
+    /**
+     * Registers the owner of an item entity dropped or tossed by a player.
+     *
+     * @param itemEntity The dropped ItemEntity.
+     * @param owner      The UUID of the player who dropped it.
+     * @param gameTime   The current game time.
+     */
+    public static void register(ItemEntity itemEntity, UUID owner, long gameTime) {
+        itemEntity.getPersistentData().putUUID(ModConstants.STACK_OWNER, owner);
+        put(itemEntity, owner, gameTime);
+    }
+
+    /**
+     * Registers the owner of an item entity loaded from disk again, if one was written to its persistent data.
+     *
+     * @param itemEntity The loaded ItemEntity.
+     * @param gameTime   The current game time.
+     */
+    public static void restore(ItemEntity itemEntity, long gameTime) {
+        CompoundTag persistentData = itemEntity.getPersistentData();
+        if (persistentData.hasUUID(ModConstants.STACK_OWNER)) {
+            put(itemEntity, persistentData.getUUID(ModConstants.STACK_OWNER), gameTime);
+        }
+    }
+
+    /**
+     * Retrieves the owner of an item entity.
+     *
+     * @param entityId The UUID of the ItemEntity.
+     * @return The UUID of the owner, or null if the entity has no registered owner.
+     */
+    public static UUID getOwner(UUID entityId) {
+        Ownership ownership = OWNERS.get(entityId);
+        return ownership != null ? ownership.owner() : null;
+    }
+
+    /**
+     * Retrieves the owner written to the persistent data of an item entity, for entities whose entry was pruned.
+     *
+     * @param itemEntity The ItemEntity.
+     * @return The UUID of the owner, or null if none was written.
+     */
+    public static UUID getPersistentOwner(ItemEntity itemEntity) {
+        CompoundTag persistentData = itemEntity.getPersistentData();
+        return persistentData.hasUUID(ModConstants.STACK_OWNER) ? persistentData.getUUID(ModConstants.STACK_OWNER) : null;
+    }
+
+    /**
+     * Removes the owner of an item entity that left its level.
+     *
+     * @param entityId The UUID of the ItemEntity.
+     * @return The UUID of the owner, or null if the entity had no registered owner.
+     */
+    public static UUID remove(UUID entityId) {
+        if (OWNERS.isEmpty()) return null;
+        Ownership ownership = OWNERS.remove(entityId);
+        return ownership != null ? ownership.owner() : null;
+    }
+
+    /**
+     * Removes the expired entries every PRUNE_INTERVAL ticks.
+     *
+     * @param gameTime The current game time.
+     */
+    public static void tick(long gameTime) {
+        if (gameTime % PRUNE_INTERVAL == 0 && !OWNERS.isEmpty()) {
+            OWNERS.values().removeIf(ownership -> ownership.expiresAt() <= gameTime);
+        }
+    }
+
+    /**
+     * Forgets every registered owner, used once the server has stopped.
+     */
+    public static void clear() {
+        OWNERS.clear();
+    }
+
+    /**
+     * Adds an entry expiring EXPIRY_MARGIN ticks after the item entity's remaining lifespan.
+     *
+     * @param itemEntity The ItemEntity.
+     * @param owner      The UUID of its owner.
+     * @param gameTime   The current game time.
+     */
+    private static void put(ItemEntity itemEntity, UUID owner, long gameTime) {
+        long remainingLife = Math.max(0, itemEntity.lifespan - itemEntity.getAge());
+        OWNERS.put(itemEntity.getUUID(), new Ownership(owner, gameTime + remainingLife + EXPIRY_MARGIN));
+    }
+
+    /**
+     * The owner of an item entity.
+     *
+     * @param owner     The UUID of the player who dropped the item.
+     * @param expiresAt The game time after which the entry is pruned.
+     */
+    private record Ownership(UUID owner, long expiresAt) {
+    }
+}
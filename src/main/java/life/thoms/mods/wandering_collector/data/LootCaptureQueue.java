@@ -0,0 +1,135 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.data;
+
+import life.thoms.mods.wandering_collector.config.WanderingCollectorConfig;
+import life.thoms.mods.wandering_collector.helpers.PlayerLootDataHelper;
+import life.thoms.mods.wandering_collector.jfr.DespawnCaptureEvent;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.*;
+
+/**
+ * Queue of despawned stacks waiting to be added to the loot of their owners.
+ *
+ * <p>Despawn events only enqueue a capture, the queue is drained at the end of the server tick. A drain takes
+ * at most LOOT_CAPTURE_BUDGET_PER_TICK captures, groups them by owner so each ledger is loaded and locked once,
+ * and merges stacks of the same item and components before they reach the ledger. Captures over the budget
+ * stay queued for the next tick.</p>
+ *
+ * <p>Only used on the server thread.</p>
+ */
+public class LootCaptureQueue {
+
+    private static final Deque<PendingCapture> QUEUE = new ArrayDeque<>();
+
+    /**
+     * Queues a despawned stack to be added to its owner's loot.
+     *
+     * @param owner    The UUID of the player who lost the stack.
+     * @param stack    The despawned stack.
+     * @param gameTime The game time at which the stack despawned.
+     */
+    public static void enqueue(UUID owner, ItemStack stack, long gameTime) {
+        QUEUE.add(new PendingCapture(owner, stack.copy(), gameTime));
+    }
+
+    /**
+     * Adds up to LOOT_CAPTURE_BUDGET_PER_TICK queued captures to the loot of their owners.
+     *
+     * @param server The server the loot belongs to.
+     */
+    public static void drain(MinecraftServer server) {
+        drain(server, WanderingCollectorConfig.LOOT_CAPTURE_BUDGET_PER_TICK.get());
+    }
+
+    /**
+     * Adds every queued capture to the loot of its owner, used before the loot is saved on shutdown.
+     *
+     * @param server The server the loot belongs to.
+     */
+    public static void drainAll(MinecraftServer server) {
+        drain(server, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Discards the queued captures, used once the server has stopped.
+     */
+    public static void clear() {
+        QUEUE.clear();
+    }
+
+    /**
+     * Adds up to the given number of queued captures to the loot of their owners, oldest first.
+     *
+     * @param server The server the loot belongs to.
+     * @param budget The maximum number of captures to process.
+     */
+    private static void drain(MinecraftServer server, int budget) {
+        if (QUEUE.isEmpty()) return;
+
+        Map<UUID, List<PendingCapture>> capturesByOwner = new LinkedHashMap<>();
+        Map<UUID, Map<LootMergeKey, PendingCapture>> stackableCaptures = new HashMap<>();
+        for (int i = 0; i < budget && !QUEUE.isEmpty(); i++) {
+            PendingCapture capture = QUEUE.poll();
+            if (capture.stack().isStackable()) {
+                PendingCapture sameStack = stackableCaptures
+                        .computeIfAbsent(capture.owner(), owner -> new HashMap<>())
+                        .putIfAbsent(LootMergeKey.of(capture.stack()), capture);
+                if (sameStack != null) {
+                    sameStack.stack().grow(capture.stack().getCount());
+                    continue;
+                }
+            }
+            capturesByOwner.computeIfAbsent(capture.owner(), owner -> new ArrayList<>()).add(capture);
+        }
+
+        for (Map.Entry<UUID, List<PendingCapture>> ownerCaptures : capturesByOwner.entrySet()) {
+            UUID owner = ownerCaptures.getKey();
+            LootPersistenceManager.updatePlayerLoot(server, owner, playerLoot -> {
+                DespawnCaptureEvent captureEvent = new DespawnCaptureEvent();
+                captureEvent.begin();
+                for (PendingCapture capture : ownerCaptures.getValue()) {
+                    if (capture.stack().isStackable()) {
+                        PlayerLootDataHelper.handleStackableLoot(playerLoot, capture.stack(), owner, capture.gameTime());
+                    } else {
+                        LootEntry entry = LootEntry.capture(capture.stack(), owner, capture.gameTime());
+                        PlayerLootDataHelper.addNewItemToPlayerLoot(playerLoot, entry);
+                    }
+                }
+                captureEvent.end();
+                if (captureEvent.shouldCommit()) {
+                    captureEvent.player = owner.toString();
+                    captureEvent.captures = ownerCaptures.getValue().size();
+                    captureEvent.ledgerEntries = playerLoot.size();
+                    captureEvent.commit();
+                }
+            });
+        }
+    }
+
+    /**
+     * A despawned stack waiting to be added to its owner's loot.
+     *
+     * @param owner    The UUID of the player who lost the stack.
+     * @param stack    A copy of the despawned stack.
+     * @param gameTime The game time at which the stack despawned.
+     */
+    private record PendingCapture(UUID owner, ItemStack stack, long gameTime) {
+    }
+}
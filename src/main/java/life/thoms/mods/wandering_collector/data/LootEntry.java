@@ -0,0 +1,214 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.data;
+
+import life.thoms.mods.wandering_collector.helpers.StackPriceCalculator;
+import life.thoms.mods.wandering_collector.utils.CustomLootDataUtil;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.UUID;
+
+/**
+ * A single lost stack in a player's loot, with its custom data decoded into plain fields.
+ *
+ * <p>The stack keeps its custom data so it can be saved and offered as before,
+ * but the identifier, capture time, owner and enchantment count are only decoded once.</p>
+ */
+public class LootEntry {
+
+    /**
+     * The highest price a single entry may reach by merging stacks into it.
+     */
+    public static final int MAX_PRICE = 640;
+
+    private final UUID id;
+    private final ItemStack stack;
+    private final long captureTime;
+    private final UUID owner;
+    private final int enchantmentCount;
+    private final LootMergeKey mergeKey;
+
+    private LootEntry(UUID id, ItemStack stack, long captureTime, UUID owner) {
+        this.id = id;
+        this.stack = stack;
+        this.captureTime = captureTime;
+        this.owner = owner;
+        this.enchantmentCount = StackPriceCalculator.getEnchantmentCount(stack);
+        this.mergeKey = stack.isStackable() ? LootMergeKey.of(stack) : null;
+    }
+
+    /**
+     * Creates an entry for a newly lost stack, tagging the stack with a new unique identifier and the capture time.
+     *
+     * @param stack    The lost stack, which will be tagged with custom data.
+     * @param owner    The UUID of the player who lost the stack.
+     * @param gameTime The current game time in ticks.
+     * @return The new loot entry.
+     */
+    public static LootEntry capture(ItemStack stack, UUID owner, long gameTime) {
+        UUID id = UUID.randomUUID();
+        CustomLootDataUtil.addStackCustomData(stack, id, gameTime);
+        return new LootEntry(id, stack, gameTime, owner);
+    }
+
+    /**
+     * Creates an entry for a previously tagged stack, such as one loaded from persistent data.
+     *
+     * @param stack The tagged stack.
+     * @param owner The UUID of the player who lost the stack.
+     * @return The loot entry, or null if the stack has no unique identifier.
+     */
+    public static LootEntry decode(ItemStack stack, UUID owner) {
+        UUID id = CustomLootDataUtil.getStackUniqueIdentifier(stack);
+        if (id == null) return null;
+
+        Long captureTime = CustomLootDataUtil.getStackExpirationTime(stack);
+        return new LootEntry(id, stack, captureTime != null ? captureTime : 0L, owner);
+    }
+
+    /**
+     * Retrieves the unique identifier of the entry.
+     *
+     * @return The unique identifier.
+     */
+    public UUID getId() {
+        return id;
+    }
+
+    /**
+     * Retrieves the stack of the entry, including its custom data.
+     *
+     * <p>Counts must be changed through {@link PlayerLootLedger#setCount(LootEntry, int)} so the change is journaled.</p>
+     *
+     * @return The stack.
+     */
+    public ItemStack getStack() {
+        return stack;
+    }
+
+    /**
+     * Retrieves the item of the entry.
+     *
+     * @return The item.
+     */
+    public Item getItem() {
+        return stack.getItem();
+    }
+
+    /**
+     * Retrieves the number of items in the entry.
+     *
+     * @return The stack count.
+     */
+    public int getCount() {
+        return stack.getCount();
+    }
+
+    /**
+     * Retrieves the number of items that can still be merged into the entry before its stack is full.
+     *
+     * @return The remaining stack space, 0 for unstackable entries.
+     */
+    public int getRemainingCount() {
+        return mergeKey != null ? Math.max(0, stack.getMaxStackSize() - stack.getCount()) : 0;
+    }
+
+    /**
+     * Retrieves how much the price of the entry can still grow by merging before reaching {@link #MAX_PRICE}.
+     *
+     * @return The price headroom in emeralds, 0 once the cap is reached.
+     */
+    public int getPriceHeadroom() {
+        return Math.max(0, MAX_PRICE - getPrice());
+    }
+
+    /**
+     * Checks if stacks can still be merged into the entry, that is if it is stackable, not full,
+     * and its price can still grow by at least one more item.
+     *
+     * <p>Depends on the current prices, so ledgers re-index their open entries when the price tables are rebuilt.</p>
+     *
+     * @return True if at least one more item can be merged into the entry, false otherwise.
+     */
+    public boolean isOpen() {
+        return getRemainingCount() > 0 && getPriceHeadroom() >= getUnitPrice();
+    }
+
+    /**
+     * Retrieves how much one more item would add to the price of the entry.
+     *
+     * @return The price of one more item in emeralds, 0 if the entry is priced per stack.
+     */
+    private int getUnitPrice() {
+        return StackPriceCalculator.getStackPrice(stack.getItem(), stack.getCount() + 1, enchantmentCount) - getPrice();
+    }
+
+    /**
+     * Retrieves the key identifying the stacks that can be merged into the entry.
+     *
+     * @return The merge key, or null for unstackable entries.
+     */
+    public LootMergeKey getMergeKey() {
+        return mergeKey;
+    }
+
+    /**
+     * Changes the number of items in the entry.
+     *
+     * @param count The new stack count.
+     */
+    void setCount(int count) {
+        stack.setCount(count);
+    }
+
+    /**
+     * Retrieves the game time at which the stack was lost.
+     *
+     * @return The capture time in ticks.
+     */
+    public long getCaptureTime() {
+        return captureTime;
+    }
+
+    /**
+     * Retrieves the owner of the entry.
+     *
+     * @return The UUID of the player who lost the stack.
+     */
+    public UUID getOwner() {
+        return owner;
+    }
+
+    /**
+     * Retrieves the number of enchantments on the stack.
+     *
+     * @return The enchantment count.
+     */
+    public int getEnchantmentCount() {
+        return enchantmentCount;
+    }
+
+    /**
+     * Retrieves the trade price of the entry, from the current unit price of its item.
+     *
+     * @return The price in emeralds.
+     */
+    public int getPrice() {
+        return StackPriceCalculator.getStackPrice(stack.getItem(), stack.getCount(), enchantmentCount);
+    }
+}
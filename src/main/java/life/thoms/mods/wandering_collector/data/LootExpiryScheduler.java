@@ -0,0 +1,153 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.data;
+
+import life.thoms.mods.wandering_collector.config.WanderingCollectorConfig;
+import life.thoms.mods.wandering_collector.constants.ModConstants;
+
+import java.util.*;
+
+/**
+ * Server-wide scheduler that removes loot entries once ITEM_DISPOSAL_TIME has passed since they were lost.
+ *
+ * <p>Entries are kept in a min-heap ordered by capture time. Since every entry expires after the same
+ * disposal time, that order is also the expiry order, so a change of ITEM_DISPOSAL_TIME only moves the
+ * threshold and never reorders the heap. Removed entries are left in the heap and skipped when they surface.</p>
+ *
+ * <p>The heap is guarded by the scheduler's own lock, which may be taken while holding a player lock
+ * from {@link PlayerLootLocks} but is never held while taking one.</p>
+ */
+public class LootExpiryScheduler {
+
+    private static final PriorityQueue<ScheduledExpiry> QUEUE =
+            new PriorityQueue<>(Comparator.comparingLong(ScheduledExpiry::captureTime));
+
+    private static volatile boolean rescheduleRequested = false;
+
+    /**
+     * Schedules the expiry of a loot entry.
+     *
+     * @param entry The loot entry to schedule.
+     */
+    public static synchronized void schedule(LootEntry entry) {
+        if (WanderingCollectorConfig.ITEM_DISPOSAL_TIME.get() > 0) {
+            QUEUE.add(new ScheduledExpiry(entry.getCaptureTime(), entry.getOwner(), entry.getId()));
+        }
+    }
+
+    /**
+     * Schedules the expiry of every entry in a loot ledger.
+     *
+     * @param playerLoot The loot ledger to schedule.
+     */
+    public static void scheduleAll(PlayerLootLedger playerLoot) {
+        for (LootEntry entry : playerLoot.getEntries()) {
+            schedule(entry);
+        }
+    }
+
+    /**
+     * Drops the scheduled expiries of a player whose loot is no longer loaded.
+     *
+     * @param playerUUID The UUID of the player.
+     */
+    public static synchronized void unscheduleAll(UUID playerUUID) {
+        QUEUE.removeIf(scheduled -> scheduled.owner().equals(playerUUID));
+    }
+
+    /**
+     * Requests the schedule to be rebuilt on the next tick, used when ITEM_DISPOSAL_TIME changes.
+     *
+     * <p>Only a change from or to 0 (expiry disabled) actually needs a rebuild, but the config
+     * reload can happen on another thread, so the rebuild is always deferred to the server thread.</p>
+     */
+    public static void requestReschedule() {
+        rescheduleRequested = true;
+    }
+
+    /**
+     * Removes every loot entry whose disposal time has passed.
+     *
+     * <p>Work is proportional to the number of entries expiring, plus removed entries surfacing from the heap.</p>
+     *
+     * @param gameTime The current game time in ticks.
+     */
+    public static void tick(long gameTime) {
+        if (rescheduleRequested) {
+            rescheduleRequested = false;
+            reschedule();
+        }
+
+        long itemDisposalTime = WanderingCollectorConfig.ITEM_DISPOSAL_TIME.get();
+        if (itemDisposalTime == 0) return;
+
+        for (ScheduledExpiry scheduled : pollExpired(gameTime - itemDisposalTime)) {
+            PlayerLootLocks.withLock(scheduled.owner(), () -> {
+                PlayerLootLedger playerLoot = ModConstants.SERVER_LOOT.get(scheduled.owner());
+                if (playerLoot != null) {
+                    LootEntry entry = playerLoot.get(scheduled.entryId());
+                    if (entry != null && entry.getCaptureTime() == scheduled.captureTime()) {
+                        playerLoot.remove(scheduled.entryId());
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Takes every scheduled expiry captured before the given time out of the heap.
+     *
+     * <p>Ledgers are only touched once the scheduler lock is released, since player locks must be taken first.</p>
+     *
+     * @param threshold The capture time before which entries have expired.
+     * @return The expired entries, oldest first.
+     */
+    private static synchronized List<ScheduledExpiry> pollExpired(long threshold) {
+        List<ScheduledExpiry> expired = new ArrayList<>();
+        while (!QUEUE.isEmpty() && QUEUE.peek().captureTime() < threshold) {
+            expired.add(QUEUE.poll());
+        }
+        return expired;
+    }
+
+    /**
+     * Clears the schedule, used when the server stops.
+     */
+    public static synchronized void clear() {
+        QUEUE.clear();
+    }
+
+    /**
+     * Rebuilds the schedule from the loaded loot ledgers.
+     */
+    private static void reschedule() {
+        clear();
+        for (Map.Entry<UUID, PlayerLootLedger> playerLoot : ModConstants.SERVER_LOOT.entrySet()) {
+            PlayerLootLocks.withLock(playerLoot.getKey(), () -> scheduleAll(playerLoot.getValue()));
+        }
+    }
+
+    /**
+     * A scheduled expiry of a single loot entry.
+     *
+     * @param captureTime The game time at which the entry was lost.
+     * @param owner       The UUID of the player who owns the entry.
+     * @param entryId     The unique identifier of the entry.
+     */
+    private record ScheduledExpiry(long captureTime, UUID owner, UUID entryId) {
+    }
+}
@@ -0,0 +1,448 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.data;
+
+import com.mojang.logging.LogUtils;
+import life.thoms.mods.wandering_collector.constants.ModConstants;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.storage.LevelResource;
+import org.slf4j.Logger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of the changes made to player loot, so loot captured or bought since the last
+ * snapshot survives a server crash.
+ *
+ * <p>Ledger changes are recorded as compact binary records: CAPTURE (the new entry), REMOVE (the entry
+ * identifier) and MERGE (the entry identifier and its new count). Records are buffered by whichever thread
+ * changes the ledger and group-committed to the journal every {@value #FLUSH_INTERVAL_TICKS} ticks on the
+ * loot IO thread.</p>
+ *
+ * <p>The journal is split into numbered segments. Once the current segment grows past
+ * {@value #COMPACTION_THRESHOLD_BYTES} bytes, a new segment is started and every changed ledger is saved;
+ * the old segments are deleted on the IO thread once those snapshots are written and synced. If any snapshot
+ * fails to be written, every segment is kept until the next start. On startup all remaining
+ * segments are replayed over the snapshots in order. Every record sets a final state, so replaying records
+ * already folded into a snapshot is harmless.</p>
+ */
+public class LootJournal {
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final int FLUSH_INTERVAL_TICKS = 5;
+    private static final long COMPACTION_THRESHOLD_BYTES = 1024 * 1024;
+    private static final String SEGMENT_EXTENSION = ".log";
+
+    private static final byte CAPTURE = 1;
+    private static final byte REMOVE = 2;
+    private static final byte MERGE = 3;
+
+    private static final AtomicLong SEGMENT_SIZE = new AtomicLong();
+    private static final Queue<JournalRecord> PENDING_RECORDS = new ConcurrentLinkedQueue<>();
+    private static volatile Path directory;
+    private static volatile HolderLookup.Provider provider;
+    private static long segment;
+    private static int ticksSinceFlush = 0;
+
+    // Only accessed on the IO thread
+    private static FileChannel channel;
+
+    /**
+     * Records a loot entry that was added to a ledger.
+     *
+     * <p>Ignored while the journal is closed, such as during replay.</p>
+     *
+     * @param entry The added entry.
+     */
+    static void recordCapture(LootEntry entry) {
+        if (directory != null) {
+            PENDING_RECORDS.add(new JournalRecord(CAPTURE, entry.getOwner(), entry.getId(), entry.getStack().copy(), entry.getCount()));
+        }
+    }
+
+    /**
+     * Records a loot entry that was removed from a ledger.
+     *
+     * @param entry The removed entry.
+     */
+    static void recordRemove(LootEntry entry) {
+        if (directory != null) {
+            PENDING_RECORDS.add(new JournalRecord(REMOVE, entry.getOwner(), entry.getId(), null, 0));
+        }
+    }
+
+    /**
+     * Records a loot entry whose count changed.
+     *
+     * @param entry The changed entry.
+     */
+    static void recordMerge(LootEntry entry) {
+        if (directory != null) {
+            PENDING_RECORDS.add(new JournalRecord(MERGE, entry.getOwner(), entry.getId(), null, entry.getCount()));
+        }
+    }
+
+    /**
+     * Replays the journal left by the previous run and opens a new segment, used when the server starts.
+     *
+     * @param server The server the loot belongs to.
+     */
+    public static void open(MinecraftServer server) {
+        Path journalDirectory = server.getWorldPath(LevelResource.ROOT).normalize()
+                .resolve(ModConstants.MOD_ID)
+                .resolve("journal");
+        provider = server.registryAccess();
+
+        List<Path> segments = listSegments(journalDirectory);
+        int replayedRecords = 0;
+        for (Path segmentFile : segments) {
+            replayedRecords += replay(server, segmentFile);
+        }
+
+        segment = segments.isEmpty() ? 0 : getSegmentNumber(segments.get(segments.size() - 1)) + 1;
+        directory = journalDirectory;
+        startSegment(segment);
+
+        if (!segments.isEmpty()) {
+            LOGGER.info("Replayed {} loot journal records from {} segments", replayedRecords, segments.size());
+            LootPersistenceManager.saveAndUnloadOfflinePlayersLoot(server);
+            deleteSegmentsBefore(segment);
+        }
+    }
+
+    /**
+     * Group-commits the buffered records and starts a compaction once the journal is large enough.
+     *
+     * @param server The server the loot belongs to.
+     */
+    public static void tick(MinecraftServer server) {
+        if (directory == null || ++ticksSinceFlush < FLUSH_INTERVAL_TICKS) return;
+
+        ticksSinceFlush = 0;
+        flush();
+        if (SEGMENT_SIZE.get() >= COMPACTION_THRESHOLD_BYTES) {
+            compact(server);
+        }
+    }
+
+    /**
+     * Folds the journal into the snapshots and closes it, used when the server stops.
+     *
+     * <p>The loot of every player must already have been saved, so the journal only has to outlive the queued saves.</p>
+     */
+    public static void close() {
+        if (directory == null) return;
+
+        flush();
+        LootPersistenceService.execute(LootJournal::closeChannel);
+        deleteSegmentsBefore(segment + 1);
+        directory = null;
+        provider = null;
+    }
+
+    /**
+     * Starts a new segment and saves every changed ledger, deleting the previous segments once the saves are written.
+     *
+     * @param server The server the loot belongs to.
+     */
+    private static void compact(MinecraftServer server) {
+        SEGMENT_SIZE.set(0);
+        startSegment(++segment);
+        LootPersistenceManager.saveAllPlayersLoot(server);
+        deleteSegmentsBefore(segment);
+    }
+
+    /**
+     * Hands the buffered records to the IO thread, which appends them to the current segment and syncs it.
+     */
+    private static void flush() {
+        if (PENDING_RECORDS.isEmpty()) return;
+
+        List<JournalRecord> records = new ArrayList<>();
+        JournalRecord record;
+        while ((record = PENDING_RECORDS.poll()) != null) {
+            records.add(record);
+        }
+        HolderLookup.Provider recordProvider = provider;
+        LootPersistenceService.execute(() -> append(records, recordProvider));
+    }
+
+    /**
+     * Queues the switch to a new segment on the IO thread, flushing the records of the previous segment first.
+     *
+     * @param segmentNumber The number of the new segment.
+     */
+    private static void startSegment(long segmentNumber) {
+        flush();
+        Path segmentFile = directory.resolve(getSegmentFileName(segmentNumber));
+        LootPersistenceService.execute(() -> {
+            closeChannel();
+            try {
+                Files.createDirectories(segmentFile.getParent());
+                channel = FileChannel.open(segmentFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                SEGMENT_SIZE.set(channel.size());
+            } catch (IOException e) {
+                LOGGER.error("Failed to open loot journal segment {}", segmentFile, e);
+            }
+        });
+    }
+
+    /**
+     * Queues the deletion of every segment older than the given one on the IO thread, after the saves queued so far.
+     *
+     * <p>Nothing is deleted if a save has failed, since the segments may then hold the only copy of that loot.</p>
+     *
+     * @param segmentNumber The number of the first segment to keep.
+     */
+    private static void deleteSegmentsBefore(long segmentNumber) {
+        Path journalDirectory = directory;
+        LootPersistenceService.executeIfSaved(() -> {
+            for (Path segmentFile : listSegments(journalDirectory)) {
+                if (getSegmentNumber(segmentFile) < segmentNumber) {
+                    try {
+                        Files.deleteIfExists(segmentFile);
+                    } catch (IOException e) {
+                        LOGGER.warn("Failed to delete loot journal segment {}", segmentFile, e);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Encodes records and appends them to the current segment as a single write. Runs on the IO thread.
+     *
+     * <p>Each record is framed by its length and CRC32, so a record torn by a crash is detected on replay.</p>
+     *
+     * @param records          The records to append.
+     * @param recordProvider   The registry lookup used to encode the stacks.
+     */
+    private static void append(List<JournalRecord> records, HolderLookup.Provider recordProvider) {
+        if (channel == null) return;
+
+        try {
+            ByteArrayOutputStream frames = new ByteArrayOutputStream();
+            DataOutputStream framesOutput = new DataOutputStream(frames);
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            CRC32 crc = new CRC32();
+
+            for (JournalRecord record : records) {
+                payload.reset();
+                writeRecord(new DataOutputStream(payload), record, recordProvider);
+                crc.reset();
+                crc.update(payload.toByteArray());
+
+                framesOutput.writeInt(payload.size());
+                framesOutput.writeInt((int) crc.getValue());
+                payload.writeTo(framesOutput);
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(frames.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            SEGMENT_SIZE.addAndGet(frames.size());
+        } catch (IOException e) {
+            LOGGER.error("Failed to append {} records to the loot journal", records.size(), e);
+        }
+    }
+
+    /**
+     * Replays a segment over the loot ledgers, stopping at the first torn or corrupt record.
+     *
+     * @param server      The server the loot belongs to.
+     * @param segmentFile The segment to replay.
+     * @return The number of records replayed.
+     */
+    private static int replay(MinecraftServer server, Path segmentFile) {
+        int replayedRecords = 0;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(segmentFile)))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                try {
+                    length = input.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                int checksum = input.readInt();
+                byte[] payload = input.readNBytes(length);
+                crc.reset();
+                crc.update(payload);
+                if (payload.length != length || (int) crc.getValue() != checksum) {
+                    LOGGER.warn("Loot journal segment {} ends with a torn record, ignoring the rest of it", segmentFile);
+                    break;
+                }
+                applyRecord(server, new DataInputStream(new ByteArrayInputStream(payload)));
+                replayedRecords++;
+            }
+        } catch (EOFException e) {
+            LOGGER.warn("Loot journal segment {} ends with a torn record, ignoring the rest of it", segmentFile);
+        } catch (IOException e) {
+            LOGGER.error("Failed to replay loot journal segment {}", segmentFile, e);
+        }
+        return replayedRecords;
+    }
+
+    /**
+     * Writes the payload of a record.
+     *
+     * @param output         The output to write to.
+     * @param record         The record to write.
+     * @param recordProvider The registry lookup used to encode the stack.
+     * @throws IOException If the record couldn't be written.
+     */
+    private static void writeRecord(DataOutput output, JournalRecord record, HolderLookup.Provider recordProvider) throws IOException {
+        output.writeByte(record.type());
+        output.writeLong(record.owner().getMostSignificantBits());
+        output.writeLong(record.owner().getLeastSignificantBits());
+        output.writeLong(record.entryId().getMostSignificantBits());
+        output.writeLong(record.entryId().getLeastSignificantBits());
+        switch (record.type()) {
+            case CAPTURE -> NbtIo.write((CompoundTag) record.stack().save(recordProvider), output);
+            case MERGE -> output.writeInt(record.count());
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Reads the payload of a record and applies it to the owner's ledger.
+     *
+     * @param server The server the loot belongs to.
+     * @param input  The input to read from.
+     * @throws IOException If the record couldn't be read.
+     */
+    private static void applyRecord(MinecraftServer server, DataInput input) throws IOException {
+        byte type = input.readByte();
+        UUID owner = new UUID(input.readLong(), input.readLong());
+        UUID entryId = new UUID(input.readLong(), input.readLong());
+        ItemStack stack = type == CAPTURE ? ItemStack.parse(provider, NbtIo.read(input)).orElse(null) : null;
+        int count = type == MERGE ? input.readInt() : 0;
+        if (type != CAPTURE && type != REMOVE && type != MERGE) {
+            throw new IOException("Unknown loot journal record type " + type);
+        }
+
+        LootPersistenceManager.updatePlayerLoot(server, owner, playerLoot -> {
+            switch (type) {
+                case CAPTURE -> {
+                    LootEntry entry = stack != null ? LootEntry.decode(stack, owner) : null;
+                    if (playerLoot.add(entry)) {
+                        LootExpiryScheduler.schedule(entry);
+                    }
+                }
+                case REMOVE -> playerLoot.remove(entryId);
+                default -> {
+                    LootEntry entry = playerLoot.get(entryId);
+                    if (entry != null) {
+                        playerLoot.setCount(entry, count);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Closes the channel of the current segment. Runs on the IO thread.
+     */
+    private static void closeChannel() {
+        if (channel == null) return;
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close loot journal segment", e);
+        }
+        channel = null;
+    }
+
+    /**
+     * Lists the segments in a journal directory, oldest first.
+     *
+     * @param journalDirectory The journal directory.
+     * @return The segment files, empty if the directory doesn't exist.
+     */
+    private static List<Path> listSegments(Path journalDirectory) {
+        if (!Files.isDirectory(journalDirectory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(journalDirectory)) {
+            return files
+                    .filter(file -> file.getFileName().toString().endsWith(SEGMENT_EXTENSION))
+                    .sorted((first, second) -> Long.compare(getSegmentNumber(first), getSegmentNumber(second)))
+                    .toList();
+        } catch (IOException e) {
+            LOGGER.error("Failed to list loot journal segments in {}", journalDirectory, e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Retrieves the number of a segment from its file name.
+     *
+     * @param segmentFile The segment file.
+     * @return The segment number, or -1 if the file name isn't a segment number.
+     */
+    private static long getSegmentNumber(Path segmentFile) {
+        String fileName = segmentFile.getFileName().toString();
+        try {
+            return Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Builds the file name of a segment.
+     *
+     * @param segmentNumber The segment number.
+     * @return The segment file name.
+     */
+    private static String getSegmentFileName(long segmentNumber) {
+        return String.format("%016d%s", segmentNumber, SEGMENT_EXTENSION);
+    }
+
+    /**
+     * A ledger change waiting to be written to the journal.
+     *
+     * @param type    The record type.
+     * @param owner   The UUID of the player who owns the entry.
+     * @param entryId The unique identifier of the entry.
+     * @param stack   A copy of the captured stack, only set for CAPTURE records.
+     * @param count   The new count, only set for MERGE records.
+     */
+    private record JournalRecord(byte type, UUID owner, UUID entryId, ItemStack stack, int count) {
+    }
+}
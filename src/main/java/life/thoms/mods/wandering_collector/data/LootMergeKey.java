@@ -0,0 +1,72 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.data;
+
+import life.thoms.mods.wandering_collector.constants.ModConstants;
+import net.minecraft.core.component.DataComponentPatch;
+import net.minecraft.core.component.DataComponentType;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.component.CustomData;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Identifies the stacks that can be merged into the same loot entry.
+ *
+ * <p>Follows {@link ItemStack#isSameItemSameComponents} semantics, except that the loot identifier, capture time
+ * and owner this mod adds to the custom data of stacks are ignored, since they differ for every entry.
+ * Custom data left by other mods or commands still has to match.</p>
+ *
+ * @param item       The item of the stacks.
+ * @param components The component changes of the stacks from the item's defaults, without this mod's custom data.
+ */
+public record LootMergeKey(Item item, Map<DataComponentType<?>, Optional<?>> components) {
+
+    /**
+     * Creates the merge key of a stack.
+     *
+     * @param stack The stack.
+     * @return The merge key of the stack.
+     */
+    public static LootMergeKey of(ItemStack stack) {
+        DataComponentPatch patch = stack.getComponentsPatch();
+        if (patch.isEmpty()) {
+            return new LootMergeKey(stack.getItem(), Map.of());
+        }
+
+        Map<DataComponentType<?>, Optional<?>> components = new HashMap<>();
+        for (Map.Entry<DataComponentType<?>, Optional<?>> component : patch.entrySet()) {
+            if (component.getKey() != DataComponents.CUSTOM_DATA) {
+                components.put(component.getKey(), component.getValue());
+            } else if (component.getValue().isPresent()) {
+                CompoundTag customData = ((CustomData) component.getValue().get()).copyTag();
+                customData.remove(ModConstants.STACK_UUID);
+                customData.remove(ModConstants.STACK_DISPOSAL_TIME);
+                customData.remove(ModConstants.STACK_OWNER);
+                if (!customData.isEmpty()) {
+                    components.put(DataComponents.CUSTOM_DATA, Optional.of(CustomData.of(customData)));
+                }
+            }
+        }
+        return new LootMergeKey(stack.getItem(), components.isEmpty() ? Map.of() : components);
+    }
+}
@@ -17,81 +17,233 @@
 package life.thoms.mods.wandering_collector.data;
 
 import life.thoms.mods.wandering_collector.constants.ModConstants;
-import life.thoms.mods.wandering_collector.utils.CustomLootDataUtil;
+import life.thoms.mods.wandering_collector.jfr.LootLoadEvent;
+import life.thoms.mods.wandering_collector.utils.ModMetrics;
+import net.minecraft.core.HolderLookup;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.Tag;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
-import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.storage.LevelResource;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Path;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Manages the persistence of player loot in the Wandering Collector mod.
+ *
+ * <p>Works like the vanilla saved data storage: each player's loot lives in its own file under
+ * {@code <world>/wandering_collector/players/<shard>/<uuid>.dat}, sharded by the first two characters
+ * of the UUID. Loot is read on demand, including for offline players, and only written when it changed.
+ * Loot saved by older versions in the player's persistent data is migrated on first login.</p>
+ *
+ * <p>Ledgers are only handed out while holding the lock of their owner, see {@link PlayerLootLocks},
+ * so loot can be captured, offered and saved from any thread.</p>
  */
 public class LootPersistenceManager {
 
     /**
-     * Saves the loot of a player to persistent data.
+     * Runs an action on the loot of a player while holding the player's lock,
+     * reading the loot from disk if it isn't loaded yet.
      *
-     * @param player the player whose loot is to be saved
+     * <p>The ledger must not be used outside the action, since other threads may change it once the lock is released.</p>
+     *
+     * @param server     the server the loot belongs to
+     * @param playerUUID the UUID of the player, who may be offline
+     * @param action     the action to run on the loot ledger of the player
+     * @param <T>        the type of the action result
+     * @return the result of the action
      */
-    public static void savePlayerLoot(Player player) {
-        CompoundTag playerPersistentData = player.getPersistentData();
-        CompoundTag playerLootData = new CompoundTag();
-        CompoundTag lootData = new CompoundTag();
+    public static <T> T computePlayerLoot(MinecraftServer server, UUID playerUUID, Function<PlayerLootLedger, T> action) {
+        return PlayerLootLocks.computeWithLock(playerUUID, () -> action.apply(getPlayerLoot(server, playerUUID)));
+    }
 
-        List<ItemStack> playerLoot = ModConstants.SERVER_LOOT.getOrDefault(player.getUUID(), new ArrayList<>());
+    /**
+     * Changes the loot of a player while holding the player's lock,
+     * reading the loot from disk if it isn't loaded yet.
+     *
+     * @param server     the server the loot belongs to
+     * @param playerUUID the UUID of the player, who may be offline
+     * @param action     the change to apply to the loot ledger of the player
+     */
+    public static void updatePlayerLoot(MinecraftServer server, UUID playerUUID, Consumer<PlayerLootLedger> action) {
+        PlayerLootLocks.withLock(playerUUID, () -> action.accept(getPlayerLoot(server, playerUUID)));
+    }
 
-        for (ItemStack stack : playerLoot) {
-            UUID itemStackUUID = CustomLootDataUtil.getStackUniqueIdentifier(stack);
-            if (itemStackUUID != null) {
-                lootData.put(itemStackUUID.toString(), stack.save(player.level().registryAccess()));
+    /**
+     * Saves the loot of a player if it changed since it was last saved.
+     *
+     * <p>The loot is copied while holding the player's lock and written in the background.</p>
+     *
+     * @param server     the server the loot belongs to
+     * @param playerUUID the UUID of the player whose loot is to be saved
+     */
+    public static void savePlayerLoot(MinecraftServer server, UUID playerUUID) {
+        PlayerLootLocks.withLock(playerUUID, () -> {
+            PlayerLootLedger playerLoot = ModConstants.SERVER_LOOT.get(playerUUID);
+            if (playerLoot != null && playerLoot.isDirty()) {
+                long saveStart = ModMetrics.startTimer();
+                LootPersistenceService.save(getPlayerFile(server, playerUUID), playerUUID, playerLoot, server.registryAccess());
+                ModMetrics.stopTimer(ModMetrics.LOOT_SAVE_TIME, saveStart);
             }
-        }
-        playerLootData.put(player.getStringUUID(), lootData);
-        playerPersistentData.put(ModConstants.PLAYER_LOOT_KEY, playerLootData);
+        });
     }
 
     /**
-     * Loads the loot of a player from persistent data.
+     * Loads the loot of a player who logged in, migrating loot saved in persistent data by older versions.
      *
      * @param player the player whose loot is to be loaded
      */
     public static void loadPlayerLoot(ServerPlayer player) {
-        CompoundTag playerData = player.getPersistentData();
+        updatePlayerLoot(player.server, player.getUUID(), playerLoot -> {
+            CompoundTag playerData = player.getPersistentData();
+            if (playerData.contains(ModConstants.PLAYER_LOOT_KEY, Tag.TAG_COMPOUND)) {
+                CompoundTag legacyLoot = playerData
+                        .getCompound(ModConstants.PLAYER_LOOT_KEY)
+                        .getCompound(player.getStringUUID());
+                for (LootEntry entry : decodePlayerLoot(legacyLoot, player.getUUID(), player.server.registryAccess()).getEntries()) {
+                    if (playerLoot.add(entry)) {
+                        LootExpiryScheduler.schedule(entry);
+                    }
+                }
+                playerData.remove(ModConstants.PLAYER_LOOT_KEY);
+                savePlayerLoot(player.server, player.getUUID());
+            }
+        });
+    }
 
-        if (playerData.contains(ModConstants.PLAYER_LOOT_KEY, Tag.TAG_COMPOUND)) {
-            CompoundTag currentPlayerLoot = playerData
-                    .getCompound(ModConstants.PLAYER_LOOT_KEY)
-                    .getCompound(player.getStringUUID());
+    /**
+     * Saves and unloads the loot of a player, evicting the trader offers built from it.
+     *
+     * @param server     the server the loot belongs to
+     * @param playerUUID the UUID of the player whose loot is to be unloaded
+     */
+    public static void unloadPlayerLoot(MinecraftServer server, UUID playerUUID) {
+        PlayerLootLocks.withLock(playerUUID, () -> {
+            savePlayerLoot(server, playerUUID);
+            ModConstants.SERVER_LOOT.remove(playerUUID);
+            LootExpiryScheduler.unscheduleAll(playerUUID);
+            TraderOfferCache.evictPlayer(playerUUID);
+        });
+    }
 
-            List<ItemStack> playerLoot = new ArrayList<>();
+    /**
+     * Saves the changed loot of all loaded players, online or not.
+     *
+     * @param server the Minecraft server the loot belongs to
+     */
+    public static void saveAllPlayersLoot(MinecraftServer server) {
+        for (UUID playerUUID : ModConstants.SERVER_LOOT.keySet()) {
+            savePlayerLoot(server, playerUUID);
+        }
+    }
 
-            for (String key : currentPlayerLoot.getAllKeys()) {
-                Tag itemTag = currentPlayerLoot.get(key);
-                if (itemTag != null) {
-                    Optional<ItemStack> itemStackOpt = ItemStack.parse(player.level().registryAccess(), itemTag);
-                    itemStackOpt.ifPresent(playerLoot::add);
-                }
+    /**
+     * Saves all loaded loot and unloads the loot of players who are not online,
+     * which is only loaded to capture items they lost while offline.
+     *
+     * @param server the Minecraft server the loot belongs to
+     */
+    public static void saveAndUnloadOfflinePlayersLoot(MinecraftServer server) {
+        for (UUID playerUUID : ModConstants.SERVER_LOOT.keySet()) {
+            if (server.getPlayerList().getPlayer(playerUUID) == null) {
+                unloadPlayerLoot(server, playerUUID);
+            } else {
+                savePlayerLoot(server, playerUUID);
             }
-            ModConstants.SERVER_LOOT.put(player.getUUID(), playerLoot);
         }
     }
 
     /**
-     * Saves the loot of all players on the server.
+     * Re-indexes the open entries of all loaded loot, after the prices they depend on changed.
+     */
+    public static void reindexAllPlayersLoot() {
+        for (UUID playerUUID : ModConstants.SERVER_LOOT.keySet()) {
+            PlayerLootLocks.withLock(playerUUID, () -> {
+                PlayerLootLedger playerLoot = ModConstants.SERVER_LOOT.get(playerUUID);
+                if (playerLoot != null) {
+                    playerLoot.reindexOpenEntries();
+                }
+            });
+        }
+    }
+
+    /**
+     * Retrieves the loot of a player, reading it from disk if it isn't loaded yet.
      *
-     * @param server the Minecraft server containing the players
+     * <p>Must be called while holding the player's lock.</p>
+     *
+     * @param server     the server the loot belongs to
+     * @param playerUUID the UUID of the player, who may be offline
+     * @return the loot ledger of the player, empty if the player has no saved loot
      */
-    public static void saveAllPlayersLoot(MinecraftServer server) {
-        List<ServerPlayer> serverPlayers = server.getPlayerList().getPlayers();
-        for (Player player : serverPlayers) {
-            savePlayerLoot(player);
+    private static PlayerLootLedger getPlayerLoot(MinecraftServer server, UUID playerUUID) {
+        PlayerLootLedger playerLoot = ModConstants.SERVER_LOOT.get(playerUUID);
+        if (playerLoot != null) {
+            return playerLoot;
+        }
+
+        long loadStart = ModMetrics.startTimer();
+        LootLoadEvent loadEvent = new LootLoadEvent();
+        loadEvent.begin();
+        Path playerFile = getPlayerFile(server, playerUUID);
+        CompoundTag savedLoot = LootPersistenceService.read(playerFile, playerUUID);
+        playerLoot = savedLoot != null
+                ? decodePlayerLoot(savedLoot, playerUUID, server.registryAccess())
+                : new PlayerLootLedger();
+        playerLoot.markSaved();
+        ModMetrics.stopTimer(ModMetrics.LOOT_LOAD_TIME, loadStart);
+        loadEvent.end();
+        if (loadEvent.shouldCommit()) {
+            loadEvent.player = playerUUID.toString();
+            loadEvent.entries = playerLoot.size();
+            loadEvent.bytesRead = savedLoot != null ? LootPersistenceService.fileSize(playerFile) : 0;
+            loadEvent.commit();
+        }
+
+        ModConstants.SERVER_LOOT.put(playerUUID, playerLoot);
+        LootExpiryScheduler.scheduleAll(playerLoot);
+        return playerLoot;
+    }
+
+    /**
+     * Resolves the file a player's loot is stored in.
+     *
+     * @param server     the server the loot belongs to
+     * @param playerUUID the UUID of the player
+     * @return the path of the player's loot file
+     */
+    private static Path getPlayerFile(MinecraftServer server, UUID playerUUID) {
+        String fileName = playerUUID.toString();
+        return server.getWorldPath(LevelResource.ROOT).normalize()
+                .resolve(ModConstants.MOD_ID)
+                .resolve("players")
+                .resolve(fileName.substring(0, 2))
+                .resolve(fileName + ".dat");
+    }
+
+    /**
+     * Decodes saved loot into a ledger.
+     *
+     * @param lootData   the saved loot, by stack unique identifier
+     * @param playerUUID the UUID of the player who owns the loot
+     * @param provider   the registry lookup used to decode the stacks
+     * @return the decoded loot ledger
+     */
+    static PlayerLootLedger decodePlayerLoot(CompoundTag lootData, UUID playerUUID, HolderLookup.Provider provider) {
+        PlayerLootLedger playerLoot = new PlayerLootLedger();
+
+        for (String key : lootData.getAllKeys()) {
+            Tag itemTag = lootData.get(key);
+            if (itemTag != null) {
+                Optional<ItemStack> itemStackOpt = ItemStack.parse(provider, itemTag);
+                itemStackOpt.ifPresent(stack -> playerLoot.restore(LootEntry.decode(stack, playerUUID)));
+            }
         }
+        return playerLoot;
     }
 }
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.data;
+
+import com.mojang.logging.LogUtils;
+import life.thoms.mods.wandering_collector.jfr.LootSaveEvent;
+import life.thoms.mods.wandering_collector.utils.ModMetrics;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtAccounter;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.world.item.ItemStack;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * Writes player loot to disk on a background thread.
+ *
+ * <p>Ledgers are only copied on the server thread, encoding and writing happens on a single IO thread.
+ * Saves requested for a player whose previous save hasn't been written yet replace that save,
+ * so a player is never written more than once per pending write.</p>
+ *
+ * <p>A ledger is only marked as saved once its snapshot has been written, so a failed write leaves it dirty
+ * and it is written again by the next save.</p>
+ */
+public class LootPersistenceService {
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final long FLUSH_TIMEOUT_SECONDS = 30;
+    private static final String LOOT_KEY = "loot";
+
+    private static final Map<UUID, PendingSave> PENDING_SAVES = new ConcurrentHashMap<>();
+    private static ExecutorService executor;
+
+    // Only accessed on the IO thread
+    private static boolean writeFailed = false;
+
+    /**
+     * Snapshots the given ledger and queues it to be written in the background.
+     *
+     * @param file       The file to write the loot to.
+     * @param playerUUID The UUID of the player whose loot is saved.
+     * @param playerLoot The loot ledger to save.
+     * @param provider   The registry lookup used to encode the stacks.
+     */
+    public static void save(Path file, UUID playerUUID, PlayerLootLedger playerLoot, HolderLookup.Provider provider) {
+        Map<UUID, ItemStack> snapshot = new LinkedHashMap<>();
+        for (LootEntry entry : playerLoot.getEntries()) {
+            snapshot.put(entry.getId(), entry.getStack().copy());
+        }
+
+        PendingSave pendingSave = new PendingSave(file, snapshot, provider, playerLoot, playerLoot.getVersion());
+        if (PENDING_SAVES.put(playerUUID, pendingSave) == null) {
+            getExecutor().execute(() -> writePendingSaves(playerUUID));
+        }
+    }
+
+    /**
+     * Reads the saved loot of a player, waiting for any write of that player still in progress.
+     *
+     * <p>A file that can't be read is moved aside rather than left to be overwritten by the next save,
+     * so the player's loot can still be recovered from it.</p>
+     *
+     * @param file       The file to read the loot from.
+     * @param playerUUID The UUID of the player whose loot is read.
+     * @return The saved loot by stack unique identifier, or null if the player has no readable saved loot.
+     */
+    public static CompoundTag read(Path file, UUID playerUUID) {
+        if (PENDING_SAVES.containsKey(playerUUID)) {
+            awaitPendingWrites();
+        }
+
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return decode(NbtIo.readCompressed(file, NbtAccounter.unlimitedHeap()));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Failed to read loot of player {} from {}", playerUUID, file, e);
+            moveAside(file);
+            return null;
+        }
+    }
+
+    /**
+     * Runs a task on the IO thread, after every save and task queued so far.
+     *
+     * @param task The task to run.
+     */
+    static void execute(Runnable task) {
+        getExecutor().execute(task);
+    }
+
+    /**
+     * Runs a task on the IO thread after every save queued so far, but only if no save has failed since the server
+     * started. Used to delete journal segments, which must be kept as long as a snapshot may be missing from disk.
+     *
+     * @param task The task to run.
+     */
+    static void executeIfSaved(Runnable task) {
+        getExecutor().execute(() -> {
+            if (writeFailed) {
+                LOGGER.warn("Keeping the loot journal since a loot save failed, it will be replayed on the next start");
+                return;
+            }
+            task.run();
+        });
+    }
+
+    /**
+     * Encodes a snapshot of a player's loot into the contents of a loot file.
+     *
+     * @param snapshot Copies of the loot stacks by unique identifier.
+     * @param provider The registry lookup used to encode the stacks.
+     * @return The loot file contents.
+     */
+    static CompoundTag encode(Map<UUID, ItemStack> snapshot, HolderLookup.Provider provider) {
+        CompoundTag lootData = new CompoundTag();
+        for (Map.Entry<UUID, ItemStack> entry : snapshot.entrySet()) {
+            lootData.put(entry.getKey().toString(), entry.getValue().save(provider));
+        }
+        CompoundTag fileData = new CompoundTag();
+        fileData.put(LOOT_KEY, lootData);
+        return fileData;
+    }
+
+    /**
+     * Extracts the saved loot from the contents of a loot file.
+     *
+     * @param fileData The loot file contents.
+     * @return The saved loot by stack unique identifier.
+     */
+    static CompoundTag decode(CompoundTag fileData) {
+        return fileData.getCompound(LOOT_KEY);
+    }
+
+    /**
+     * Retrieves the size of a loot file, used to report the bytes read or written.
+     *
+     * @param file The loot file.
+     * @return The size of the file in bytes, or 0 if it can't be read.
+     */
+    static long fileSize(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Waits for every queued save to be written and stops the IO thread, used when the server has stopped.
+     *
+     * <p>Waits at most {@value #FLUSH_TIMEOUT_SECONDS} seconds, saves still pending after that are lost.</p>
+     */
+    public static synchronized void shutdown() {
+        if (executor == null) return;
+
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warn("Timed out writing player loot, {} saves were not written", PENDING_SAVES.size());
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+        writeFailed = false;
+        PENDING_SAVES.clear();
+    }
+
+    /**
+     * Blocks until every save queued so far has been written.
+     */
+    private static void awaitPendingWrites() {
+        try {
+            getExecutor().submit(() -> {}).get(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            LOGGER.warn("Timed out waiting for pending loot saves", e);
+        }
+    }
+
+    /**
+     * Writes the pending save of a player, including saves that replace it while it is being written.
+     *
+     * @param playerUUID The UUID of the player whose loot is written.
+     */
+    private static void writePendingSaves(UUID playerUUID) {
+        boolean written = false;
+        try {
+            PendingSave pendingSave;
+            while ((pendingSave = PENDING_SAVES.get(playerUUID)) != null) {
+                if (write(playerUUID, pendingSave)) {
+                    pendingSave.ledger().markSaved(pendingSave.version());
+                }
+                if (PENDING_SAVES.remove(playerUUID, pendingSave)) {
+                    break;
+                }
+            }
+            written = true;
+        } finally {
+            if (!written) {
+                // The ledger is still dirty, dropping the save lets the next one be scheduled
+                PENDING_SAVES.remove(playerUUID);
+            }
+        }
+    }
+
+    /**
+     * Encodes a snapshot and writes it to disk, replacing the previous file atomically.
+     *
+     * <p>The file and its directory are synced before the write counts as successful,
+     * so a written snapshot survives a power loss.</p>
+     *
+     * @param playerUUID  The UUID of the player whose loot is written.
+     * @param pendingSave The snapshot to write.
+     * @return True if the snapshot was written, false otherwise.
+     */
+    private static boolean write(UUID playerUUID, PendingSave pendingSave) {
+        long writeStart = ModMetrics.startTimer();
+        LootSaveEvent saveEvent = new LootSaveEvent();
+        saveEvent.begin();
+
+        Path file = pendingSave.file();
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        boolean written = false;
+        try {
+            CompoundTag fileData = encode(pendingSave.snapshot(), pendingSave.provider());
+            Files.createDirectories(file.getParent());
+            NbtIo.writeCompressed(fileData, tempFile);
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(file.getParent());
+            written = true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Failed to write loot of player {} to {}", playerUUID, file, e);
+            writeFailed = true;
+        }
+        ModMetrics.stopTimer(ModMetrics.LOOT_WRITE_TIME, writeStart);
+        saveEvent.end();
+        if (saveEvent.shouldCommit()) {
+            saveEvent.player = playerUUID.toString();
+            saveEvent.entries = pendingSave.snapshot().size();
+            saveEvent.bytesWritten = fileSize(file);
+            saveEvent.commit();
+        }
+        return written;
+    }
+
+    /**
+     * Syncs a directory so the files renamed into it survive a power loss.
+     *
+     * <p>Some platforms, such as Windows, can't open directories, the rename is then as durable as the platform makes it.</p>
+     *
+     * @param directory The directory to sync.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            LOGGER.debug("Can't sync directory {}", directory, e);
+        }
+    }
+
+    /**
+     * Renames a loot file that can't be read, so it isn't replaced by the next save.
+     *
+     * @param file The unreadable loot file.
+     */
+    private static void moveAside(Path file) {
+        Path corruptFile = file.resolveSibling(file.getFileName() + "." + System.currentTimeMillis() + ".corrupt");
+        try {
+            Files.move(file, corruptFile);
+            LOGGER.warn("Moved unreadable loot file {} to {}", file, corruptFile);
+        } catch (IOException e) {
+            LOGGER.error("Failed to move unreadable loot file {} aside", file, e);
+        }
+    }
+
+    /**
+     * Retrieves the IO executor, creating it if the server started again after a shutdown.
+     *
+     * @return The IO executor.
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Wandering Collector Loot IO");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * A snapshot of a player's loot waiting to be written.
+     *
+     * @param file     The file to write to.
+     * @param snapshot Copies of the loot stacks by unique identifier.
+     * @param provider The registry lookup used to encode the stacks.
+     * @param ledger   The ledger the snapshot was taken from, marked as saved once the snapshot is written.
+     * @param version  The version of the ledger when the snapshot was taken.
+     */
+    private record PendingSave(Path file, Map<UUID, ItemStack> snapshot, HolderLookup.Provider provider,
+                               PlayerLootLedger ledger, long version) {
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.data;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.mojang.logging.LogUtils;
+import life.thoms.mods.wandering_collector.config.WanderingCollectorConfig;
+import life.thoms.mods.wandering_collector.constants.ModConstants;
+import life.thoms.mods.wandering_collector.utils.LatencyHistogram;
+import life.thoms.mods.wandering_collector.utils.ModMetrics;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.level.storage.LevelResource;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Periodically writes the mod's metrics to a file in the world folder, for scraping or inspection.
+ *
+ * <p>The metrics are formatted on the server thread and written on the loot IO thread,
+ * replacing the previous file atomically.</p>
+ */
+public class MetricsExporter {
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final String PREFIX = ModConstants.MOD_ID + "_";
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    /**
+     * The formats metrics can be exported in.
+     */
+    public enum Format {
+        NONE,
+        PROMETHEUS,
+        JSON
+    }
+
+    /**
+     * Exports the metrics every METRICS_EXPORT_INTERVAL ticks, if metrics and exporting are enabled.
+     *
+     * @param server   The server whose world folder the metrics are written to.
+     * @param gameTime The current game time.
+     */
+    public static void tick(MinecraftServer server, long gameTime) {
+        if (!ModMetrics.isEnabled()) return;
+        Format format = WanderingCollectorConfig.METRICS_EXPORT_FORMAT.get();
+        if (format == Format.NONE || gameTime % WanderingCollectorConfig.METRICS_EXPORT_INTERVAL.get() != 0) return;
+
+        String content = format == Format.PROMETHEUS ? formatPrometheus() : formatJson();
+        Path file = server.getWorldPath(LevelResource.ROOT).normalize()
+                .resolve(ModConstants.MOD_ID)
+                .resolve(format == Format.PROMETHEUS ? "metrics.prom" : "metrics.json");
+        LootPersistenceService.execute(() -> write(file, content));
+    }
+
+    /**
+     * Formats the metrics in the Prometheus text exposition format.
+     *
+     * @return The formatted metrics.
+     */
+    public static String formatPrometheus() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, LongAdder> counter : ModMetrics.getCounters().entrySet()) {
+            String name = PREFIX + counter.getKey() + "_total";
+            builder.append("# TYPE ").append(name).append(" counter\n");
+            builder.append(name).append(' ').append(counter.getValue().sum()).append('\n');
+        }
+        for (Map.Entry<String, LatencyHistogram> histogram : ModMetrics.getHistograms().entrySet()) {
+            String name = PREFIX + histogram.getKey() + "_seconds";
+            LatencyHistogram.Snapshot snapshot = histogram.getValue().snapshot();
+            builder.append("# TYPE ").append(name).append(" summary\n");
+            for (double percentile : PERCENTILES) {
+                builder.append(name).append("{quantile=\"").append(percentile / 100).append("\"} ")
+                        .append(toSeconds(snapshot.percentileNanos(percentile))).append('\n');
+            }
+            builder.append(name).append("_sum ").append(toSeconds(snapshot.totalNanos())).append('\n');
+            builder.append(name).append("_count ").append(snapshot.count()).append('\n');
+        }
+        String ledgerName = PREFIX + "ledger_entries";
+        builder.append("# TYPE ").append(ledgerName).append(" gauge\n");
+        for (Map.Entry<UUID, Integer> ledgerSize : ModMetrics.getLedgerSizes().entrySet()) {
+            builder.append(ledgerName).append("{player=\"").append(ledgerSize.getKey()).append("\"} ")
+                    .append(ledgerSize.getValue()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Formats the metrics as a JSON object.
+     *
+     * @return The formatted metrics.
+     */
+    public static String formatJson() {
+        JsonObject root = new JsonObject();
+
+        JsonObject counters = new JsonObject();
+        for (Map.Entry<String, LongAdder> counter : ModMetrics.getCounters().entrySet()) {
+            counters.addProperty(counter.getKey(), counter.getValue().sum());
+        }
+        root.add("counters", counters);
+
+        JsonObject histograms = new JsonObject();
+        for (Map.Entry<String, LatencyHistogram> histogram : ModMetrics.getHistograms().entrySet()) {
+            LatencyHistogram.Snapshot snapshot = histogram.getValue().snapshot();
+            JsonObject histogramJson = new JsonObject();
+            histogramJson.addProperty("count", snapshot.count());
+            histogramJson.addProperty("mean_ns", snapshot.meanNanos());
+            for (double percentile : PERCENTILES) {
+                histogramJson.addProperty("p" + String.valueOf(percentile).replace(".0", "") + "_ns",
+                        snapshot.percentileNanos(percentile));
+            }
+            histogramJson.addProperty("max_ns", snapshot.maxNanos());
+            histograms.add(histogram.getKey(), histogramJson);
+        }
+        root.add("latencies", histograms);
+
+        JsonObject ledgerSizes = new JsonObject();
+        for (Map.Entry<UUID, Integer> ledgerSize : ModMetrics.getLedgerSizes().entrySet()) {
+            ledgerSizes.addProperty(ledgerSize.getKey().toString(), ledgerSize.getValue());
+        }
+        root.add("ledger_entries", ledgerSizes);
+
+        return new GsonBuilder().setPrettyPrinting().create().toJson(root);
+    }
+
+    /**
+     * Converts nanoseconds to seconds.
+     *
+     * @param nanos The duration in nanoseconds.
+     * @return The duration in seconds.
+     */
+    private static double toSeconds(double nanos) {
+        return nanos / 1_000_000_000.0;
+    }
+
+    /**
+     * Replaces the metrics file, writing to a temporary file first.
+     *
+     * @param file    The metrics file.
+     * @param content The formatted metrics.
+     */
+    private static void write(Path file, String content) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(tempFile, content, StandardCharsets.UTF_8);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to export metrics to {}", file, e);
+        }
+    }
+}
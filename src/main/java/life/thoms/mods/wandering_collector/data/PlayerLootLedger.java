@@ -0,0 +1,330 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.data;
+
+import net.minecraft.world.item.Item;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Indexed collection of the loot lost by a single player.
+ *
+ * <p>Entries are indexed by their stack UUID, keeping insertion order, and by item,
+ * so lookups and removals don't have to scan the whole loot. Stackable entries that aren't full yet are also
+ * indexed by {@link LootMergeKey}, so merging a stack only visits entries it can be merged into.</p>
+ *
+ * <p>Every change bumps the ledger version, which is used to tell whether the ledger changed since it was saved,
+ * and is recorded in the {@link LootJournal}.</p>
+ */
+public class PlayerLootLedger {
+
+    private final Map<UUID, LootEntry> entries = new LinkedHashMap<>();
+    private final Map<Item, Map<UUID, LootEntry>> entriesByItem = new HashMap<>();
+    private final Map<LootMergeKey, Map<UUID, LootEntry>> openEntries = new HashMap<>();
+    private final Collection<LootEntry> entriesView = Collections.unmodifiableCollection(entries.values());
+    private List<LootEntry> entryList = null;
+    private long version = 0;
+    private volatile long savedVersion = 0;
+
+    /**
+     * Adds a loot entry to the ledger.
+     *
+     * @param entry The entry to add.
+     * @return True if the entry was added, false if an entry with the same identifier already exists.
+     */
+    public boolean add(LootEntry entry) {
+        if (!restore(entry)) {
+            return false;
+        }
+        LootJournal.recordCapture(entry);
+        return true;
+    }
+
+    /**
+     * Adds a loot entry read from a snapshot, without recording it in the journal.
+     *
+     * @param entry The entry to add.
+     * @return True if the entry was added, false if an entry with the same identifier already exists.
+     */
+    boolean restore(LootEntry entry) {
+        if (entry == null || entries.containsKey(entry.getId())) {
+            return false;
+        }
+        entries.put(entry.getId(), entry);
+        entryList = null;
+        entriesByItem.computeIfAbsent(entry.getItem(), item -> new LinkedHashMap<>()).put(entry.getId(), entry);
+        updateOpenIndex(entry);
+        version++;
+        return true;
+    }
+
+    /**
+     * Retrieves a loot entry by its unique identifier.
+     *
+     * @param stackUniqueIdentifier The unique identifier of the entry.
+     * @return The matching entry, or null if not found.
+     */
+    public LootEntry get(UUID stackUniqueIdentifier) {
+        return stackUniqueIdentifier != null ? entries.get(stackUniqueIdentifier) : null;
+    }
+
+    /**
+     * Checks if the ledger contains an entry with the given unique identifier.
+     *
+     * @param stackUniqueIdentifier The unique identifier to search for.
+     * @return True if the identifier is in the ledger, false otherwise.
+     */
+    public boolean contains(UUID stackUniqueIdentifier) {
+        return stackUniqueIdentifier != null && entries.containsKey(stackUniqueIdentifier);
+    }
+
+    /**
+     * Removes a loot entry by its unique identifier.
+     *
+     * @param stackUniqueIdentifier The unique identifier of the entry to remove.
+     * @return The removed entry, or null if not found.
+     */
+    public LootEntry remove(UUID stackUniqueIdentifier) {
+        if (stackUniqueIdentifier == null) return null;
+
+        LootEntry entry = entries.remove(stackUniqueIdentifier);
+        if (entry != null) {
+            entryList = null;
+            removeFromItemIndex(entry);
+            removeFromOpenIndex(entry);
+            LootJournal.recordRemove(entry);
+            version++;
+        }
+        return entry;
+    }
+
+    /**
+     * Removes the oldest loot entry of the given item and count.
+     *
+     * @param item  The item of the entry to remove.
+     * @param count The exact count of the entry to remove.
+     * @return The removed entry, or null if no entry matches.
+     */
+    public LootEntry removeFirst(Item item, int count) {
+        Map<UUID, LootEntry> itemEntries = entriesByItem.get(item);
+        if (itemEntries == null) return null;
+
+        for (LootEntry entry : itemEntries.values()) {
+            if (entry.getCount() == count) {
+                return remove(entry.getId());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes every loot entry matching the given predicate.
+     *
+     * @param predicate The predicate selecting the entries to remove.
+     */
+    public void removeIf(Predicate<LootEntry> predicate) {
+        Iterator<LootEntry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            LootEntry entry = iterator.next();
+            if (predicate.test(entry)) {
+                iterator.remove();
+                entryList = null;
+                removeFromItemIndex(entry);
+                removeFromOpenIndex(entry);
+                LootJournal.recordRemove(entry);
+                version++;
+            }
+        }
+    }
+
+    /**
+     * Changes the number of items in a loot entry of this ledger.
+     *
+     * @param entry The entry to change.
+     * @param count The new stack count.
+     */
+    public void setCount(LootEntry entry, int count) {
+        entry.setCount(count);
+        updateOpenIndex(entry);
+        LootJournal.recordMerge(entry);
+        version++;
+    }
+
+    /**
+     * Rebuilds the open entry index, used after the prices changed since they decide which entries are open.
+     */
+    public void reindexOpenEntries() {
+        openEntries.clear();
+        for (LootEntry entry : entries.values()) {
+            updateOpenIndex(entry);
+        }
+    }
+
+    /**
+     * Retrieves a read-only view of the loot entries of the given item, in insertion order.
+     *
+     * @param item The item to look up.
+     * @return The entries of the item, empty if there are none.
+     */
+    public Collection<LootEntry> getEntriesOfItem(Item item) {
+        Map<UUID, LootEntry> itemEntries = entriesByItem.get(item);
+        return itemEntries != null ? Collections.unmodifiableCollection(itemEntries.values()) : Collections.emptyList();
+    }
+
+    /**
+     * Retrieves a read-only view of the entries that stacks with the given merge key can still be merged into,
+     * in insertion order.
+     *
+     * <p>The view is backed by the ledger, entries leave it as soon as they are full or reach the price cap,
+     * so it must be copied before changing the count of its entries while iterating it.</p>
+     *
+     * @param mergeKey The merge key of the stack to merge.
+     * @return The entries with stack space left, empty if there are none.
+     */
+    public Collection<LootEntry> getOpenEntries(LootMergeKey mergeKey) {
+        Map<UUID, LootEntry> keyEntries = openEntries.get(mergeKey);
+        return keyEntries != null ? Collections.unmodifiableCollection(keyEntries.values()) : Collections.emptyList();
+    }
+
+    /**
+     * Retrieves a read-only view of all loot entries, in insertion order.
+     *
+     * <p>The view is backed by the ledger and reflects later changes.</p>
+     *
+     * @return The loot entries of the ledger.
+     */
+    public Collection<LootEntry> getEntries() {
+        return entriesView;
+    }
+
+    /**
+     * Retrieves a random access snapshot of all loot entries, in insertion order.
+     *
+     * <p>The snapshot is cached until an entry is added or removed, merges don't change it,
+     * so selections can jump to entries by position.</p>
+     *
+     * @return The loot entries of the ledger, as an unmodifiable list.
+     */
+    public List<LootEntry> getEntryList() {
+        if (entryList == null) {
+            entryList = List.copyOf(entries.values());
+        }
+        return entryList;
+    }
+
+    /**
+     * Retrieves the number of loot entries in the ledger.
+     *
+     * @return The number of loot entries.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Checks if the ledger has no loot entries.
+     *
+     * @return True if the ledger is empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Retrieves the version of the ledger, which changes every time the ledger is modified.
+     *
+     * @return The ledger version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Checks if the ledger changed since it was last marked as saved.
+     *
+     * @return True if the ledger has unsaved changes, false otherwise.
+     */
+    public boolean isDirty() {
+        return version != savedVersion;
+    }
+
+    /**
+     * Marks the current version of the ledger as saved, used when the ledger was just read from disk.
+     */
+    public void markSaved() {
+        savedVersion = version;
+    }
+
+    /**
+     * Marks a version of the ledger as saved once its snapshot has been written.
+     *
+     * <p>Called from the IO thread without the owner's lock, so it only ever moves the saved version forward.</p>
+     *
+     * @param snapshotVersion The version of the ledger when the written snapshot was taken.
+     */
+    void markSaved(long snapshotVersion) {
+        if (snapshotVersion > savedVersion) {
+            savedVersion = snapshotVersion;
+        }
+    }
+
+    /**
+     * Adds an entry to the open entry index if it has stack space left, or removes it otherwise.
+     *
+     * @param entry The added or changed entry.
+     */
+    private void updateOpenIndex(LootEntry entry) {
+        if (entry.isOpen()) {
+            openEntries.computeIfAbsent(entry.getMergeKey(), key -> new LinkedHashMap<>()).put(entry.getId(), entry);
+        } else {
+            removeFromOpenIndex(entry);
+        }
+    }
+
+    /**
+     * Removes an entry from the open entry index.
+     *
+     * @param entry The removed or filled entry.
+     */
+    private void removeFromOpenIndex(LootEntry entry) {
+        if (entry.getMergeKey() == null) return;
+
+        Map<UUID, LootEntry> keyEntries = openEntries.get(entry.getMergeKey());
+        if (keyEntries != null) {
+            keyEntries.remove(entry.getId());
+            if (keyEntries.isEmpty()) {
+                openEntries.remove(entry.getMergeKey());
+            }
+        }
+    }
+
+    /**
+     * Removes an entry from the secondary item index.
+     *
+     * @param entry The removed entry.
+     */
+    private void removeFromItemIndex(LootEntry entry) {
+        Map<UUID, LootEntry> itemEntries = entriesByItem.get(entry.getItem());
+        if (itemEntries != null) {
+            itemEntries.remove(entry.getId());
+            if (itemEntries.isEmpty()) {
+                entriesByItem.remove(entry.getItem());
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.data;
+
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Striped locks guarding the loot ledgers of players.
+ *
+ * <p>A ledger is only read or changed while holding the lock of its owner, so ledgers of different players
+ * can be used from different threads at the same time. Players share a fixed number of stripes, the locks are
+ * reentrant so a ledger operation may call another one for the same player.</p>
+ *
+ * <p>A player lock may be held while taking the {@link LootExpiryScheduler} lock, never the other way around.</p>
+ */
+public class PlayerLootLocks {
+
+    private static final int STRIPES = 64;
+    private static final ReentrantLock[] LOCKS = new ReentrantLock[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            LOCKS[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Runs an action while holding the lock of a player.
+     *
+     * @param playerUUID The UUID of the player.
+     * @param action     The action to run.
+     * @param <T>        The type of the action result.
+     * @return The result of the action.
+     */
+    public static <T> T computeWithLock(UUID playerUUID, Supplier<T> action) {
+        ReentrantLock lock = getLock(playerUUID);
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs an action while holding the lock of a player.
+     *
+     * @param playerUUID The UUID of the player.
+     * @param action     The action to run.
+     */
+    public static void withLock(UUID playerUUID, Runnable action) {
+        ReentrantLock lock = getLock(playerUUID);
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the lock stripe of a player.
+     *
+     * @param playerUUID The UUID of the player.
+     * @return The lock guarding the player's ledger.
+     */
+    private static ReentrantLock getLock(UUID playerUUID) {
+        int hash = playerUUID.hashCode();
+        return LOCKS[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+}
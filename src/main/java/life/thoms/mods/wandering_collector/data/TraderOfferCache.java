@@ -0,0 +1,150 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.data;
+
+import net.minecraft.world.item.trading.MerchantOffer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Cache of the lost item offers a Wandering Trader has built for each player, keyed by trader and player UUID.
+ *
+ * <p>An entry is only valid for the ledger version it was built from, so buying an item or an item expiring
+ * invalidates it and the offers are rebuilt on the next interaction. Entries of a trader are evicted when the
+ * trader leaves its level, and entries of a player when the player's loot is unloaded, so the cache never keeps
+ * an unloaded ledger in memory.</p>
+ *
+ * <p>Merchant offers are mutable and are changed by the trader that holds them, as they are used or repriced,
+ * so the cache keeps its own copies and hands out fresh copies of them.</p>
+ *
+ * <p>Only used on the server thread.</p>
+ */
+public class TraderOfferCache {
+
+    private static final Map<UUID, Map<UUID, CachedOffers>> CACHE = new HashMap<>();
+
+    /**
+     * Retrieves the cached offers of a trader for a player.
+     *
+     * @param traderUUID The UUID of the trader.
+     * @param playerUUID The UUID of the player.
+     * @return The cached offers, or null if none were built yet.
+     */
+    public static CachedOffers get(UUID traderUUID, UUID playerUUID) {
+        Map<UUID, CachedOffers> traderOffers = CACHE.get(traderUUID);
+        return traderOffers != null ? traderOffers.get(playerUUID) : null;
+    }
+
+    /**
+     * Caches the offers of a trader for a player, built from the current version of the player's ledger.
+     *
+     * @param traderUUID The UUID of the trader.
+     * @param playerUUID The UUID of the player.
+     * @param playerLoot The ledger the offers were built from.
+     * @param entryIds   The identifiers of the loot entries offered by the trader.
+     * @param offers     The offers built for the entries still in the ledger, copied before they are cached.
+     */
+    public static void put(UUID traderUUID, UUID playerUUID, PlayerLootLedger playerLoot, List<UUID> entryIds, List<MerchantOffer> offers) {
+        CACHE.computeIfAbsent(traderUUID, uuid -> new HashMap<>())
+                .put(playerUUID, new CachedOffers(playerLoot, playerLoot.getVersion(), entryIds, copy(offers)));
+    }
+
+    /**
+     * Evicts the offers of a trader, used when the trader leaves its level.
+     *
+     * @param traderUUID The UUID of the trader.
+     */
+    public static void evictTrader(UUID traderUUID) {
+        if (!CACHE.isEmpty()) {
+            CACHE.remove(traderUUID);
+        }
+    }
+
+    /**
+     * Evicts the offers every trader built for a player, used when the player's loot is unloaded.
+     *
+     * @param playerUUID The UUID of the player.
+     */
+    public static void evictPlayer(UUID playerUUID) {
+        if (CACHE.isEmpty()) return;
+
+        Iterator<Map<UUID, CachedOffers>> iterator = CACHE.values().iterator();
+        while (iterator.hasNext()) {
+            Map<UUID, CachedOffers> traderOffers = iterator.next();
+            traderOffers.remove(playerUUID);
+            if (traderOffers.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Evicts every cached offer, used once the server has stopped.
+     */
+    public static void clear() {
+        CACHE.clear();
+    }
+
+    /**
+     * Copies merchant offers, so the copies can be handed to a trader without sharing their state.
+     *
+     * @param offers The offers to copy.
+     * @return The copied offers.
+     */
+    private static List<MerchantOffer> copy(List<MerchantOffer> offers) {
+        List<MerchantOffer> copies = new ArrayList<>(offers.size());
+        for (MerchantOffer offer : offers) {
+            copies.add(offer.copy());
+        }
+        return copies;
+    }
+
+    /**
+     * Offers of a trader for a player.
+     *
+     * @param playerLoot The ledger the offers were built from.
+     * @param version    The version of the ledger the offers were built from.
+     * @param entryIds   The identifiers of the loot entries offered by the trader.
+     * @param offers     The offers built for the entries still in the ledger.
+     */
+    public record CachedOffers(PlayerLootLedger playerLoot, long version, List<UUID> entryIds, List<MerchantOffer> offers) {
+
+        /**
+         * Checks if the offers are still up to date with the given ledger.
+         *
+         * @param playerLoot The current ledger of the player.
+         * @return True if the ledger has not changed since the offers were built, false otherwise.
+         */
+        public boolean isValidFor(PlayerLootLedger playerLoot) {
+            return this.playerLoot == playerLoot && version == playerLoot.getVersion();
+        }
+
+        /**
+         * Copies the cached offers, to be handed to a trader.
+         *
+         * @return Copies of the offers built for the entries still in the ledger.
+         */
+        public List<MerchantOffer> copyOffers() {
+            return copy(offers);
+        }
+    }
+}
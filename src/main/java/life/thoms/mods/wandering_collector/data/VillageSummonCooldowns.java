@@ -0,0 +1,138 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.data;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import life.thoms.mods.wandering_collector.constants.ModConstants;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.saveddata.SavedData;
+
+/**
+ * Trader summoning cooldowns of the villages of a dimension, saved with the dimension's data.
+ *
+ * <p>Maps each village id to the game time a trader was last summoned for it. Cooldowns are stored as a single
+ * long array of id and time pairs, and entries whose cooldown has run out are pruned periodically.</p>
+ *
+ * <p>Only used on the server thread.</p>
+ */
+public class VillageSummonCooldowns extends SavedData {
+
+    public static final long NO_COOLDOWN = Long.MIN_VALUE;
+
+    private static final String DATA_NAME = ModConstants.MOD_ID + "_summon_cooldowns";
+    private static final String COOLDOWNS_KEY = "cooldowns";
+    private static final SavedData.Factory<VillageSummonCooldowns> FACTORY =
+            new SavedData.Factory<>(VillageSummonCooldowns::new, VillageSummonCooldowns::load, null);
+
+    private final Long2LongMap cooldowns = new Long2LongOpenHashMap();
+
+    private VillageSummonCooldowns() {
+        cooldowns.defaultReturnValue(NO_COOLDOWN);
+    }
+
+    /**
+     * Retrieves the cooldowns of a dimension, loading or creating them if needed.
+     *
+     * @param level The level of the dimension.
+     * @return The cooldowns of the dimension.
+     */
+    public static VillageSummonCooldowns get(ServerLevel level) {
+        return level.getDataStorage().computeIfAbsent(FACTORY, DATA_NAME);
+    }
+
+    /**
+     * Retrieves the cooldowns of a dimension, only if they were already loaded or saved before.
+     *
+     * @param level The level of the dimension.
+     * @return The cooldowns of the dimension, or null if the dimension has none.
+     */
+    public static VillageSummonCooldowns getIfPresent(ServerLevel level) {
+        return level.getDataStorage().get(FACTORY, DATA_NAME);
+    }
+
+    /**
+     * Retrieves the game time a trader was last summoned for a village.
+     *
+     * @param villageId The id of the village.
+     * @return The game time of the last summon, or NO_COOLDOWN if none was recorded.
+     */
+    public long getCooldownStart(long villageId) {
+        return cooldowns.get(villageId);
+    }
+
+    /**
+     * Starts the cooldown of a village.
+     *
+     * @param villageId The id of the village.
+     * @param gameTime  The game time at which a trader was summoned.
+     */
+    public void startCooldown(long villageId, long gameTime) {
+        cooldowns.put(villageId, gameTime);
+        setDirty();
+    }
+
+    /**
+     * Removes the cooldowns that have run out.
+     *
+     * @param gameTime         The current game time.
+     * @param cooldownDuration The duration of a cooldown in ticks.
+     */
+    public void prune(long gameTime, long cooldownDuration) {
+        if (cooldowns.isEmpty()) return;
+        if (cooldowns.long2LongEntrySet().removeIf(cooldown -> gameTime - cooldown.getLongValue() >= cooldownDuration)) {
+            setDirty();
+        }
+    }
+
+    /**
+     * Saves the cooldowns as pairs of village id and game time.
+     *
+     * @param tag      The tag to save to.
+     * @param provider The registry lookup provider.
+     * @return The tag with the saved cooldowns.
+     */
+    @Override
+    public CompoundTag save(CompoundTag tag, HolderLookup.Provider provider) {
+        long[] packedCooldowns = new long[cooldowns.size() * 2];
+        int i = 0;
+        for (Long2LongMap.Entry cooldown : cooldowns.long2LongEntrySet()) {
+            packedCooldowns[i++] = cooldown.getLongKey();
+            packedCooldowns[i++] = cooldown.getLongValue();
+        }
+        tag.putLongArray(COOLDOWNS_KEY, packedCooldowns);
+        return tag;
+    }
+
+    /**
+     * Loads the cooldowns saved by {@link #save}.
+     *
+     * @param tag      The saved tag.
+     * @param provider The registry lookup provider.
+     * @return The loaded cooldowns.
+     */
+    private static VillageSummonCooldowns load(CompoundTag tag, HolderLookup.Provider provider) {
+        VillageSummonCooldowns villageCooldowns = new VillageSummonCooldowns();
+        long[] packedCooldowns = tag.getLongArray(COOLDOWNS_KEY);
+        for (int i = 0; i + 1 < packedCooldowns.length; i += 2) {
+            villageCooldowns.cooldowns.put(packedCooldowns[i], packedCooldowns[i + 1]);
+        }
+        return villageCooldowns;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.events;
+
+import life.thoms.mods.wandering_collector.constants.ModConstants;
+import life.thoms.mods.wandering_collector.helpers.VillageResolver;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraftforge.event.level.ChunkEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+/**
+ * Handles chunk events to keep the chunk caches of the Wandering Collector mod in sync with loaded chunks.
+ */
+@Mod.EventBusSubscriber(modid = ModConstants.MOD_ID, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public class ChunkEvents {
+
+    /**
+     * Handles chunk unload events to evict the cached village of the chunk.
+     *
+     * @param chunkUnloadEvent the event triggered when a chunk is unloaded
+     */
+    @SubscribeEvent
+    public static void onChunkUnload(ChunkEvent.Unload chunkUnloadEvent) {
+        if (chunkUnloadEvent.getLevel() instanceof ServerLevel level) {
+            VillageResolver.onChunkUnloaded(level.dimension(), chunkUnloadEvent.getChunk().getPos());
+        }
+    }
+}
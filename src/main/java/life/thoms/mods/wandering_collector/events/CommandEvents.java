@@ -0,0 +1,40 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.events;
+
+import life.thoms.mods.wandering_collector.commands.WanderingCollectorCommand;
+import life.thoms.mods.wandering_collector.constants.ModConstants;
+import net.minecraftforge.event.RegisterCommandsEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+/**
+ * Handles command registration for the Wandering Collector mod.
+ */
+@Mod.EventBusSubscriber(modid = ModConstants.MOD_ID, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public class CommandEvents {
+
+    /**
+     * Handles command registration to add the /wandering_collector command.
+     *
+     * @param registerCommandsEvent the event triggered when the server registers its commands
+     */
+    @SubscribeEvent
+    public static void onRegisterCommands(RegisterCommandsEvent registerCommandsEvent) {
+        WanderingCollectorCommand.register(registerCommandsEvent.getDispatcher());
+    }
+}
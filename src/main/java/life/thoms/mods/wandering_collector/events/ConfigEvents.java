@@ -0,0 +1,96 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.events;
+
+import life.thoms.mods.wandering_collector.config.WanderingCollectorConfig;
+import life.thoms.mods.wandering_collector.constants.ModConstants;
+import life.thoms.mods.wandering_collector.data.LootExpiryScheduler;
+import life.thoms.mods.wandering_collector.data.LootPersistenceManager;
+import life.thoms.mods.wandering_collector.helpers.ItemValueFilter;
+import life.thoms.mods.wandering_collector.helpers.StackPriceCalculator;
+import life.thoms.mods.wandering_collector.utils.ConfiguredPriceTable;
+import life.thoms.mods.wandering_collector.utils.ItemClassificationTable;
+import life.thoms.mods.wandering_collector.utils.ModMetrics;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.event.config.ModConfigEvent;
+import net.minecraftforge.fml.event.lifecycle.FMLCommonSetupEvent;
+
+/**
+ * Handles mod lifecycle and config loading events to rebuild the values derived from the registries and the config.
+ */
+@Mod.EventBusSubscriber(modid = ModConstants.MOD_ID, bus = Mod.EventBusSubscriber.Bus.MOD)
+public class ConfigEvents {
+
+    /**
+     * Handles common setup, once the registries are frozen, to classify and price every registered item.
+     *
+     * <p>The config is loaded before every mod has registered its items, so the tables are first built here
+     * rather than on load, otherwise configured modded items would be reported as unknown and dropped.</p>
+     *
+     * @param event the common setup event
+     */
+    @SubscribeEvent
+    public static void onCommonSetup(FMLCommonSetupEvent event) {
+        event.enqueueWork(ConfigEvents::rebuildTables);
+    }
+
+    /**
+     * Handles the initial config load, applying the values that don't depend on the registries.
+     *
+     * @param event the config loading event
+     */
+    @SubscribeEvent
+    public static void onConfigLoading(ModConfigEvent.Loading event) {
+        if (event.getConfig().getSpec() == WanderingCollectorConfig.SPEC) {
+            applySettings();
+        }
+    }
+
+    /**
+     * Handles config changes made while the game is running, rebuilding the derived config values.
+     *
+     * @param event the config reloading event
+     */
+    @SubscribeEvent
+    public static void onConfigReloading(ModConfigEvent.Reloading event) {
+        if (event.getConfig().getSpec() == WanderingCollectorConfig.SPEC) {
+            rebuildTables();
+            applySettings();
+        }
+    }
+
+    /**
+     * Rebuilds the price, classification and filter tables from the registries and the config,
+     * and re-indexes the loaded loot whose open entries depend on the prices.
+     */
+    private static void rebuildTables() {
+        ConfiguredPriceTable.rebuild();
+        ItemClassificationTable.rebuild();
+        StackPriceCalculator.rebuild();
+        ItemValueFilter.rebuild();
+        LootPersistenceManager.reindexAllPlayersLoot();
+    }
+
+    /**
+     * Applies the config values that don't depend on the registries.
+     */
+    private static void applySettings() {
+        LootExpiryScheduler.requestReschedule();
+        ModMetrics.setEnabled(WanderingCollectorConfig.METRICS_ENABLED.get());
+    }
+}
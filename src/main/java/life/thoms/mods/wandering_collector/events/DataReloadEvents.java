@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.events;
+
+import life.thoms.mods.wandering_collector.constants.ModConstants;
+import life.thoms.mods.wandering_collector.data.LootPersistenceManager;
+import life.thoms.mods.wandering_collector.helpers.ItemValueFilter;
+import life.thoms.mods.wandering_collector.helpers.StackPriceCalculator;
+import life.thoms.mods.wandering_collector.helpers.VillageResolver;
+import life.thoms.mods.wandering_collector.utils.ConfiguredPriceTable;
+import net.minecraftforge.event.TagsUpdatedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+/**
+ * Handles data reload events such as tag updates in the Wandering Collector mod.
+ */
+@Mod.EventBusSubscriber(modid = ModConstants.MOD_ID, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public class DataReloadEvents {
+
+    /**
+     * Handles tag updates to resolve the configured item tags against their new members,
+     * and to index the village structures when the server loads its data.
+     *
+     * @param tagsUpdatedEvent the event triggered when tags are loaded or synced
+     */
+    @SubscribeEvent
+    public static void onTagsUpdated(TagsUpdatedEvent tagsUpdatedEvent) {
+        ConfiguredPriceTable.onTagsLoaded();
+        StackPriceCalculator.rebuild();
+        ItemValueFilter.rebuild();
+        LootPersistenceManager.reindexAllPlayersLoot();
+        if (tagsUpdatedEvent.getUpdateCause() == TagsUpdatedEvent.UpdateCause.SERVER_DATA_LOAD) {
+            VillageResolver.rebuild(tagsUpdatedEvent.getRegistryAccess());
+        }
+    }
+}
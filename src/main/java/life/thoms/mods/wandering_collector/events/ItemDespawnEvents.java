@@ -17,19 +17,24 @@
 package life.thoms.mods.wandering_collector.events;
 
 import life.thoms.mods.wandering_collector.constants.ModConstants;
-import life.thoms.mods.wandering_collector.helpers.PlayerLootDataHelper;
+import life.thoms.mods.wandering_collector.data.ItemOwnershipRegistry;
+import life.thoms.mods.wandering_collector.data.LootCaptureQueue;
+import life.thoms.mods.wandering_collector.helpers.ItemValueFilter;
 import life.thoms.mods.wandering_collector.utils.CustomLootDataUtil;
+import life.thoms.mods.wandering_collector.utils.DespawnCause;
 import life.thoms.mods.wandering_collector.utils.ItemEntityUtil;
+import life.thoms.mods.wandering_collector.utils.ModMetrics;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.item.ItemEntity;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.item.ItemStack;
+import net.minecraftforge.event.entity.EntityJoinLevelEvent;
 import net.minecraftforge.event.entity.EntityLeaveLevelEvent;
+import net.minecraftforge.event.entity.item.ItemExpireEvent;
+import net.minecraftforge.eventbus.api.EventPriority;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.UUID;
 
 /**
@@ -38,9 +43,45 @@ import java.util.UUID;
 @Mod.EventBusSubscriber(modid = ModConstants.MOD_ID, bus = Mod.EventBusSubscriber.Bus.FORGE)
 public class ItemDespawnEvents {
 
+    /**
+     * Event handler for when an item entity reaches the end of its lifespan.
+     * <p>Runs last, so it only sees items that no other handler kept alive, and marks them as expiring
+     * for the leave level event that follows in the same tick.</p>
+     *
+     * @param event the item expire event
+     */
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public static void onItemExpire(ItemExpireEvent event) {
+        if (!event.getEntity().level().isClientSide()) {
+            ItemEntityUtil.markExpiring(event.getEntity());
+        }
+    }
+
+    /**
+     * Event handler for when an entity joins the level.
+     * <p>Registers the owner of item entities loaded from disk again, from their persistent data.</p>
+     *
+     * @param event the entity join level event
+     */
+    @SubscribeEvent
+    public static void onEntityJoinLevel(EntityJoinLevelEvent event) {
+        if (!event.getLevel().isClientSide() && event.loadedFromDisk()) {
+            if (event.getEntity() instanceof ItemEntity itemEntity) {
+                ItemOwnershipRegistry.restore(itemEntity, event.getLevel().getGameTime());
+            }
+        }
+    }
+
     /**
      * Event handler for when an entity leaves the level.
-     * <p>Checks if an item entity has despawned and updates player loot accordingly.</p>
+     * <p>Classifies why an item entity left and, if the config captures that cause, queues it to be added
+     * to its owner's loot at the end of the tick.</p>
+     *
+     * <p>The item's registered owner is removed whatever the reason, picked up and merged items included.
+     * Items that were only unloaded with their chunk are then rejected by their removal reason. When the registry
+     * no longer knows the owner, it is read from the entity's persistent data. Stacks that aren't valuable, or that
+     * have neither a thrower, an owner nor custom data that could name an owner, are rejected before the cause
+     * is classified.</p>
      *
      * @param event the entity leave level event
      */
@@ -48,25 +89,41 @@ public class ItemDespawnEvents {
     public static void onEntityLeaveLevel(EntityLeaveLevelEvent event) {
         if (!event.getLevel().isClientSide()) {
             if (event.getEntity() instanceof ItemEntity itemEntity) {
+                UUID registeredOwner = ItemOwnershipRegistry.remove(itemEntity.getUUID());
+
+                Entity.RemovalReason reason = itemEntity.getRemovalReason();
+                if (reason == null || !reason.shouldDestroy()) return;
+                ModMetrics.increment(ModMetrics.DESPAWNS_SEEN);
+
+                ItemStack eventStack = itemEntity.getItem();
+                if (!ItemValueFilter.filterValuableItems(eventStack)) {
+                    ModMetrics.increment(ModMetrics.DESPAWNS_FILTERED);
+                    return;
+                }
+
+                if (registeredOwner == null) {
+                    registeredOwner = ItemOwnershipRegistry.getPersistentOwner(itemEntity);
+                }
+
+                Entity thrower = itemEntity.getOwner();
+                if (thrower == null && registeredOwner == null && !CustomLootDataUtil.mayHaveStackOwner(eventStack)) {
+                    ModMetrics.increment(ModMetrics.DESPAWNS_FILTERED);
+                    return;
+                }
 
-                if (ItemEntityUtil.itemEntityHasDespawned(itemEntity, event.getLevel().getMinBuildHeight())) {
-                    ItemStack eventStack = itemEntity.getItem();
-                    Entity owner = itemEntity.getOwner();
-                    if (owner == null) {
-                        UUID ownerUniqueIdentifier = CustomLootDataUtil.getStackOwner(eventStack);
-                        if (ownerUniqueIdentifier != null) {
-                            owner = event.getLevel().getPlayerByUUID(ownerUniqueIdentifier);
-                        }
+                DespawnCause cause = ItemEntityUtil.classifyRemoval(itemEntity, event.getLevel().getMinBuildHeight());
+                if (cause.isCaptured()) {
+                    UUID ownerUUID;
+                    if (thrower instanceof Player player) {
+                        ownerUUID = player.getUUID();
+                    } else if (registeredOwner != null) {
+                        ownerUUID = registeredOwner;
+                    } else {
+                        ownerUUID = CustomLootDataUtil.getStackOwner(eventStack);
                     }
-                    if (owner instanceof Player player) {
-                        long gameTime = itemEntity.level().getGameTime();
-                        List<ItemStack> currentPlayerLoot = ModConstants.SERVER_LOOT.getOrDefault(owner.getUUID(), new ArrayList<>());
-                        if (eventStack.isStackable()) {
-                            PlayerLootDataHelper.handleStackableLoot(currentPlayerLoot, eventStack, player);
-                        } else {
-                            ItemStack stack = CustomLootDataUtil.addStackCustomData(eventStack, gameTime);
-                            PlayerLootDataHelper.addNewItemToPlayerLoot(player, stack);
-                        }
+                    if (ownerUUID != null) {
+                        LootCaptureQueue.enqueue(ownerUUID, eventStack, itemEntity.level().getGameTime());
+                        ModMetrics.increment(ModMetrics.DESPAWNS_CAPTURED);
                     }
                 }
             }
@@ -16,27 +16,32 @@
 
 package life.thoms.mods.wandering_collector.events;
 
-import it.unimi.dsi.fastutil.longs.LongSet;
 import life.thoms.mods.wandering_collector.config.WanderingCollectorConfig;
 import life.thoms.mods.wandering_collector.constants.ModConstants;
-import life.thoms.mods.wandering_collector.helpers.InventoryDataHelper;
+import life.thoms.mods.wandering_collector.data.ItemOwnershipRegistry;
+import life.thoms.mods.wandering_collector.helpers.ItemValueFilter;
 import life.thoms.mods.wandering_collector.helpers.TraderSummoningHelper;
+import life.thoms.mods.wandering_collector.helpers.VillageResolver;
+import life.thoms.mods.wandering_collector.jfr.VillageLookupEvent;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.item.ItemEntity;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.item.Items;
+import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.BellBlock;
 import net.minecraft.world.level.block.entity.BellBlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.world.level.levelgen.structure.Structure;
-import net.minecraft.world.level.levelgen.structure.structures.JigsawStructure;
-import net.minecraftforge.event.entity.living.LivingDeathEvent;
+import net.minecraftforge.event.entity.item.ItemTossEvent;
+import net.minecraftforge.event.entity.living.LivingDropsEvent;
 import net.minecraftforge.event.entity.player.PlayerInteractEvent;
+import net.minecraftforge.eventbus.api.EventPriority;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 
-import java.util.Map;
+import java.util.UUID;
 
 /**
  * Handles player-related events in the Wandering Collector mod.
@@ -45,15 +50,41 @@ import java.util.Map;
 public class PlayerEvents {
 
     /**
-     * Handles player death events to set ownership on inventory items.
+     * Handles player drops on death to register the player as the owner of the valuable dropped items.
+     * <p>Runs last, so drops that another mod keeps or cancels are not registered.</p>
      *
-     * @param playerDeathEvent the event triggered when a player dies
+     * @param livingDropsEvent the event triggered when a dying entity drops its items
      */
-    @SubscribeEvent
-    public static void onPlayerDeath(LivingDeathEvent playerDeathEvent) {
-        if (!playerDeathEvent.getEntity().level().isClientSide()) {
-            if (playerDeathEvent.getEntity() instanceof Player player) {
-                InventoryDataHelper.setOwnerToInventoryItems(player);
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public static void onPlayerDrops(LivingDropsEvent livingDropsEvent) {
+        if (!livingDropsEvent.getEntity().level().isClientSide()) {
+            if (livingDropsEvent.getEntity() instanceof Player player) {
+                UUID owner = player.getUUID();
+                long gameTime = player.level().getGameTime();
+                for (ItemEntity drop : livingDropsEvent.getDrops()) {
+                    if (ItemValueFilter.filterValuableItems(drop.getItem())) {
+                        ItemOwnershipRegistry.register(drop, owner, gameTime);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Handles items tossed by players to register the player as the owner of the valuable tossed items.
+     * <p>The thrower of an item is only resolved while the player is online, so without this, items tossed by
+     * a player who logs out before they despawn would have no owner. Runs last, so cancelled tosses are not
+     * registered.</p>
+     *
+     * @param itemTossEvent the event triggered when a player tosses an item
+     */
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public static void onItemToss(ItemTossEvent itemTossEvent) {
+        Player player = itemTossEvent.getPlayer();
+        if (!player.level().isClientSide()) {
+            ItemEntity tossedItem = itemTossEvent.getEntity();
+            if (ItemValueFilter.filterValuableItems(tossedItem.getItem())) {
+                ItemOwnershipRegistry.register(tossedItem, player.getUUID(), player.level().getGameTime());
             }
         }
     }
@@ -97,19 +128,18 @@ public class PlayerEvents {
                         }
 
                         if (bellWillRing) {
-                            Map<Structure, LongSet> structureMap = rightClickBlockEvent.getLevel().getChunk(pos).getAllReferences();
-                            for (Structure structure : structureMap.keySet()) {
-                                if (structure instanceof JigsawStructure jigsawStructure) {
-                                    if (jigsawStructure.biomes().unwrapKey().isPresent()) {
-                                        if (jigsawStructure.biomes().unwrapKey().get().location().toString().contains("village")) {
-                                            if (structureMap.get(structure).toLongArray().length > 0) {
-                                                Long villageId = structureMap.get(structure).toLongArray()[0];
-                                                TraderSummoningHelper.summonTrader(villageId, pos, level, rightClickBlockEvent.getLevel().getGameTime(), player);
-                                                break;
-                                            }
-                                        }
-                                    }
-                                }
+                            VillageLookupEvent lookupEvent = new VillageLookupEvent();
+                            lookupEvent.begin();
+                            Long villageId = VillageResolver.getVillageId(level, pos);
+                            lookupEvent.end();
+                            if (lookupEvent.shouldCommit()) {
+                                lookupEvent.dimension = level.dimension().location().toString();
+                                lookupEvent.chunk = ChunkPos.asLong(pos);
+                                lookupEvent.found = villageId != null;
+                                lookupEvent.commit();
+                            }
+                            if (villageId != null && level instanceof ServerLevel serverLevel) {
+                                TraderSummoningHelper.summonTrader(villageId, pos, serverLevel, serverLevel.getGameTime(), player);
                             }
                         }
                     }
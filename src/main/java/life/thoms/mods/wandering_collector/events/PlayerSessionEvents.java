@@ -37,7 +37,6 @@ public class PlayerSessionEvents {
     @SubscribeEvent
     public static void onPlayerLogin(PlayerEvent.PlayerLoggedInEvent loginEvent) {
         if (!loginEvent.getEntity().level().isClientSide()) {
-            ModConstants.SERVER_LOOT.remove(loginEvent.getEntity().getUUID());
             LootPersistenceManager.loadPlayerLoot((ServerPlayer) loginEvent.getEntity());
         }
     }
@@ -50,8 +49,7 @@ public class PlayerSessionEvents {
     @SubscribeEvent
     public static void onPlayerLogout(PlayerEvent.PlayerLoggedOutEvent logoutEvent) {
         if (!logoutEvent.getEntity().level().isClientSide()) {
-            LootPersistenceManager.savePlayerLoot(logoutEvent.getEntity());
-            ModConstants.SERVER_LOOT.remove(logoutEvent.getEntity().getUUID());
+            LootPersistenceManager.unloadPlayerLoot(logoutEvent.getEntity().getServer(), logoutEvent.getEntity().getUUID());
         }
     }
 }
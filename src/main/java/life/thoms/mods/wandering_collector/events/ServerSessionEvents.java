@@ -17,8 +17,22 @@
 package life.thoms.mods.wandering_collector.events;
 
 import life.thoms.mods.wandering_collector.constants.ModConstants;
+import life.thoms.mods.wandering_collector.data.ItemOwnershipRegistry;
+import life.thoms.mods.wandering_collector.data.LootCaptureQueue;
+import life.thoms.mods.wandering_collector.data.LootExpiryScheduler;
+import life.thoms.mods.wandering_collector.data.LootJournal;
 import life.thoms.mods.wandering_collector.data.LootPersistenceManager;
+import life.thoms.mods.wandering_collector.data.LootPersistenceService;
+import life.thoms.mods.wandering_collector.data.TraderOfferCache;
+import life.thoms.mods.wandering_collector.helpers.LostItemOfferSelector;
+import life.thoms.mods.wandering_collector.helpers.TraderSummoningHelper;
+import life.thoms.mods.wandering_collector.helpers.VillageResolver;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.Level;
+import net.minecraftforge.event.level.LevelEvent;
+import net.minecraftforge.event.server.ServerStartingEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
 import net.minecraftforge.event.server.ServerStoppingEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
@@ -29,6 +43,16 @@ import net.minecraftforge.fml.common.Mod;
 @Mod.EventBusSubscriber(modid = ModConstants.MOD_ID, bus = Mod.EventBusSubscriber.Bus.FORGE)
 public class ServerSessionEvents {
 
+    /**
+     * Handles server starting events to replay the loot journal left by a crash.
+     *
+     * @param serverStartingEvent the event triggered when the server is starting
+     */
+    @SubscribeEvent
+    public static void onServerStarting(ServerStartingEvent serverStartingEvent) {
+        LootJournal.open(serverStartingEvent.getServer());
+    }
+
     /**
      * Handles server stopping events to save all players' loot.
      *
@@ -37,6 +61,38 @@ public class ServerSessionEvents {
     @SubscribeEvent
     public static void onServerStopping(ServerStoppingEvent serverStoppingEvent) {
         MinecraftServer server = serverStoppingEvent.getServer();
+        LootCaptureQueue.drainAll(server);
         LootPersistenceManager.saveAllPlayersLoot(server);
+        LootJournal.close();
+        LootExpiryScheduler.clear();
+    }
+
+    /**
+     * Handles level save events to save changed loot along with the world and unload the loot of offline players.
+     *
+     * @param levelSaveEvent the event triggered when a level is saved
+     */
+    @SubscribeEvent
+    public static void onLevelSave(LevelEvent.Save levelSaveEvent) {
+        if (levelSaveEvent.getLevel() instanceof ServerLevel level && level.dimension() == Level.OVERWORLD) {
+            LootPersistenceManager.saveAndUnloadOfflinePlayersLoot(level.getServer());
+        }
+    }
+
+    /**
+     * Handles server stopped events to wait for the loot saves still being written.
+     *
+     * @param serverStoppedEvent the event triggered once the server has stopped
+     */
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent serverStoppedEvent) {
+        LootPersistenceService.shutdown();
+        LootCaptureQueue.clear();
+        ItemOwnershipRegistry.clear();
+        TraderOfferCache.clear();
+        VillageResolver.clear();
+        TraderSummoningHelper.clear();
+        LostItemOfferSelector.clear();
+        ModConstants.SERVER_LOOT.clear();
     }
 }
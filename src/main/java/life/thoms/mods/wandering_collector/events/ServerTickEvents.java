@@ -0,0 +1,81 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.events;
+
+import life.thoms.mods.wandering_collector.config.WanderingCollectorConfig;
+import life.thoms.mods.wandering_collector.constants.ModConstants;
+import life.thoms.mods.wandering_collector.data.ItemOwnershipRegistry;
+import life.thoms.mods.wandering_collector.data.LootCaptureQueue;
+import life.thoms.mods.wandering_collector.data.LootExpiryScheduler;
+import life.thoms.mods.wandering_collector.data.LootJournal;
+import life.thoms.mods.wandering_collector.data.MetricsExporter;
+import life.thoms.mods.wandering_collector.data.VillageSummonCooldowns;
+import life.thoms.mods.wandering_collector.helpers.TraderSummoningHelper;
+import life.thoms.mods.wandering_collector.utils.ItemEntityUtil;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+/**
+ * Handles server tick events to run the periodic work of the Wandering Collector mod.
+ */
+@Mod.EventBusSubscriber(modid = ModConstants.MOD_ID, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public class ServerTickEvents {
+
+    private static final long COOLDOWN_PRUNE_INTERVAL = 6000L;
+
+    /**
+     * Handles the end of each server tick.
+     *
+     * @param serverTickEvent the event triggered on every server tick
+     */
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent serverTickEvent) {
+        if (serverTickEvent.phase == TickEvent.Phase.END) {
+            MinecraftServer server = serverTickEvent.getServer();
+            long gameTime = server.overworld().getGameTime();
+            LootCaptureQueue.drain(server);
+            LootExpiryScheduler.tick(gameTime);
+            LootJournal.tick(server);
+            ItemEntityUtil.clearExpiring();
+            ItemOwnershipRegistry.tick(gameTime);
+            TraderSummoningHelper.tick(server, gameTime);
+            MetricsExporter.tick(server, gameTime);
+            if (gameTime % COOLDOWN_PRUNE_INTERVAL == 0) {
+                pruneSummonCooldowns(server, gameTime);
+            }
+        }
+    }
+
+    /**
+     * Removes the trader summoning cooldowns that have run out in every dimension.
+     *
+     * @param server   The server whose dimensions are pruned.
+     * @param gameTime The current game time.
+     */
+    private static void pruneSummonCooldowns(MinecraftServer server, long gameTime) {
+        long cooldownDuration = WanderingCollectorConfig.TRADER_SUMMONING_COOLDOWN_DURATION.get();
+        for (ServerLevel level : server.getAllLevels()) {
+            VillageSummonCooldowns villageCooldowns = VillageSummonCooldowns.getIfPresent(level);
+            if (villageCooldowns != null) {
+                villageCooldowns.prune(gameTime, cooldownDuration);
+            }
+        }
+    }
+}
@@ -17,6 +17,8 @@
 package life.thoms.mods.wandering_collector.events;
 
 import life.thoms.mods.wandering_collector.constants.ModConstants;
+import life.thoms.mods.wandering_collector.data.LootPersistenceManager;
+import life.thoms.mods.wandering_collector.data.TraderOfferCache;
 import life.thoms.mods.wandering_collector.helpers.WanderingTraderHelper;
 import life.thoms.mods.wandering_collector.utils.CustomLootDataUtil;
 
@@ -25,13 +27,12 @@ import net.minecraft.world.entity.npc.WanderingTrader;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.trading.MerchantOffer;
+import net.minecraftforge.event.entity.EntityLeaveLevelEvent;
 import net.minecraftforge.event.entity.player.PlayerInteractEvent;
 import net.minecraftforge.event.entity.player.TradeWithVillagerEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.UUID;
 
 /**
@@ -70,23 +71,27 @@ public class WanderingTraderEvents {
             if (villager instanceof WanderingTrader) {
                 MerchantOffer offer = event.getMerchantOffer();
                 ItemStack resultStack = offer.getResult();
-                List<ItemStack> playerLoot = ModConstants.SERVER_LOOT.getOrDefault(player.getUUID(), new ArrayList<>());
                 UUID stackUniqueIdentifier = CustomLootDataUtil.getStackUniqueIdentifier(resultStack);
 
-                if (CustomLootDataUtil.isUniqueIdentifierInList(stackUniqueIdentifier, playerLoot)) {
-                    ItemStack stack = CustomLootDataUtil.getStackFromList(stackUniqueIdentifier, playerLoot);
-                    playerLoot.remove(stack);
-                } else {
-                    if (!resultStack.isStackable()) return;
-
-                    for (ItemStack stackFromList : playerLoot) {
-                        if (stackFromList.getItem().equals(resultStack.getItem()) &&
-                                stackFromList.getCount() == resultStack.getCount()) {
-                            playerLoot.remove(stackFromList);
-                            break;
-                        }
+                LootPersistenceManager.updatePlayerLoot(player.getServer(), player.getUUID(), playerLoot -> {
+                    if (playerLoot.remove(stackUniqueIdentifier) == null && resultStack.isStackable()) {
+                        playerLoot.removeFirst(resultStack.getItem(), resultStack.getCount());
                     }
-                }
+                });
+            }
+        }
+    }
+
+    /**
+     * Handles Wandering Traders leaving the level to evict their cached offers.
+     *
+     * @param event the entity leave level event
+     */
+    @SubscribeEvent
+    public static void onEntityLeaveLevel(EntityLeaveLevelEvent event) {
+        if (!event.getLevel().isClientSide()) {
+            if (event.getEntity() instanceof WanderingTrader trader) {
+                TraderOfferCache.evictTrader(trader.getUUID());
             }
         }
     }
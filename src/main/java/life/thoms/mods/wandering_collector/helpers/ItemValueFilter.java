@@ -16,15 +16,27 @@
 
 package life.thoms.mods.wandering_collector.helpers;
 
+import life.thoms.mods.wandering_collector.utils.ConfiguredPriceTable;
+import life.thoms.mods.wandering_collector.utils.ItemClassification;
+import life.thoms.mods.wandering_collector.utils.ItemClassificationTable;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 
+import java.util.BitSet;
+
 import static life.thoms.mods.wandering_collector.utils.ItemFilterUtil.*;
 
 /**
  * Utility class for filtering valuable items.
+ *
+ * <p>Whether an item is valuable regardless of enchantments is precomputed into a bitset over raw item registry ids,
+ * so rejecting an ordinary stack is a single bit read and an enchantment check, without allocating.</p>
  */
 public class ItemValueFilter {
 
+    private static volatile ValuableItems valuableItems = new ValuableItems(new BitSet(), 0);
+
     /**
      * Determines if an item stack is considered valuable.
      *
@@ -32,9 +44,46 @@ public class ItemValueFilter {
      * @return true if the item stack is valuable, false otherwise
      */
     public static boolean filterValuableItems(ItemStack stack) {
-        return !isExcludedItem(stack) && (isEnchanted(stack) || isEnchantedBook(stack) || isWeapon(stack)
-                || isArmor(stack) || isTool(stack) || isEffectPotion(stack) || isValuableBlock(stack) ||
-                isValuableIngot(stack) || getConfiguredPrice(stack) != -1);
+        ValuableItems valuable = valuableItems;
+        int id = BuiltInRegistries.ITEM.getId(stack.getItem());
+        boolean valuableItem = id >= 0 && id < valuable.size()
+                ? valuable.items().get(id)
+                : isValuableItem(stack.getItem());
+        return valuableItem || (isEnchanted(stack) && !isExcludedItem(stack));
+    }
+
+    /**
+     * Rebuilds the valuable item bitset from the current item classifications and configured prices.
+     */
+    public static void rebuild() {
+        int size = BuiltInRegistries.ITEM.size();
+        BitSet valuable = new BitSet(size);
+        for (Item item : BuiltInRegistries.ITEM) {
+            if (isValuableItem(item)) {
+                valuable.set(BuiltInRegistries.ITEM.getId(item));
+            }
+        }
+        valuableItems = new ValuableItems(valuable, size);
+    }
+
+    /**
+     * Determines if an item is valuable regardless of enchantments.
+     *
+     * @param item the item to evaluate
+     * @return true if the item is valuable by category or has a configured price, false otherwise
+     */
+    private static boolean isValuableItem(Item item) {
+        ItemClassification.Category category = ItemClassificationTable.get(item).category();
+        return category != ItemClassification.Category.EXCLUDED
+                && (category.isValuable() || ConfiguredPriceTable.getPrice(item) != -1);
     }
 
+    /**
+     * The valuable item bitset and the number of registered items it was built for.
+     *
+     * @param items the raw ids of the valuable items
+     * @param size  the number of registered items when the bitset was built
+     */
+    private record ValuableItems(BitSet items, int size) {
+    }
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.helpers;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import life.thoms.mods.wandering_collector.data.LootEntry;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.Level;
+
+import java.util.*;
+
+/**
+ * Selects which lost items a Wandering Trader offers to a player.
+ *
+ * <p>In {@link Mode#RANDOM} mode every entry is kept with the configured probability. The gaps between kept entries
+ * are drawn from a geometric distribution and jumped over by index, so the cost grows with the number of offers
+ * rather than the number of entries. When more entries would be kept than the maximum number of offers, the offers
+ * are sampled uniformly among all entries instead, so newer entries are as likely to be offered as older ones.</p>
+ *
+ * <p>In {@link Mode#VALUE_WEIGHTED} mode as many entries as the probability would keep on average, up to the
+ * maximum, are sampled without replacement with a chance proportional to their price, keeping the best sampling
+ * keys in a bounded heap.</p>
+ *
+ * <p>Every dimension has its own random number generator seeded from the world seed, so selections can be
+ * reproduced.</p>
+ */
+public class LostItemOfferSelector {
+
+    /**
+     * The ways lost items can be selected.
+     */
+    public enum Mode {
+        RANDOM,
+        VALUE_WEIGHTED
+    }
+
+    private static final Map<ResourceKey<Level>, SplittableRandom> LEVEL_RANDOMS = new HashMap<>();
+
+    /**
+     * Retrieves the random number generator of a dimension, seeded from the world seed and the dimension.
+     *
+     * @param level The level of the dimension.
+     * @return The random number generator of the dimension.
+     */
+    public static SplittableRandom getRandom(ServerLevel level) {
+        return LEVEL_RANDOMS.computeIfAbsent(level.dimension(),
+                dimension -> new SplittableRandom(level.getSeed() * 31 + dimension.location().hashCode()));
+    }
+
+    /**
+     * Forgets the random number generators of every dimension, used once the server has stopped.
+     */
+    public static void clear() {
+        LEVEL_RANDOMS.clear();
+    }
+
+    /**
+     * Selects the entries to offer.
+     *
+     * @param entries     The loot entries of the player, oldest first, as a random access list.
+     * @param probability The probability of an entry being offered, between 0 and 1.
+     * @param maxOffers   The maximum number of entries to select.
+     * @param mode        The selection mode.
+     * @param random      The random number generator to use.
+     * @return The selected entries.
+     */
+    public static List<LootEntry> select(List<LootEntry> entries, double probability, int maxOffers,
+                                         Mode mode, SplittableRandom random) {
+        if (entries.isEmpty() || probability <= 0 || maxOffers <= 0) {
+            return new ArrayList<>();
+        }
+        return switch (mode) {
+            case RANDOM -> selectRandom(entries, probability, maxOffers, random);
+            case VALUE_WEIGHTED -> selectValueWeighted(entries, probability, maxOffers, random);
+        };
+    }
+
+    /**
+     * Keeps every entry with the given probability, jumping a geometrically distributed number of positions between
+     * kept ones, and samples maxOffers positions uniformly instead once more entries than that are kept.
+     *
+     * <p>Once more than maxOffers entries are kept, the kept entries are a uniform subset of more than maxOffers
+     * positions, so a uniform subset of maxOffers of them is a uniform subset of all positions, drawn directly with
+     * Floyd's algorithm. At most maxOffers + 1 gaps and maxOffers positions are drawn, whatever the size of the loot,
+     * and only the selected entries are read from the random access list.</p>
+     *
+     * @param entries     The loot entries of the player, oldest first.
+     * @param probability The probability of an entry being offered, between 0 and 1.
+     * @param maxOffers   The maximum number of entries to select.
+     * @param random      The random number generator to use.
+     * @return The selected entries, oldest first.
+     */
+    private static List<LootEntry> selectRandom(List<LootEntry> entries, double probability, int maxOffers,
+                                                SplittableRandom random) {
+        int size = entries.size();
+        int capacity = Math.min(maxOffers, size);
+        int[] positions = new int[capacity];
+        int kept = 0;
+        double logSkipProbability = probability < 1 ? Math.log(1 - probability) : 0;
+        long position = -1;
+
+        while (true) {
+            long skip = probability < 1 ? (long) (Math.log(1 - random.nextDouble()) / logSkipProbability) : 0;
+            if (skip >= size - 1 - position) break;
+            position += skip + 1;
+
+            if (kept == capacity) {
+                return getEntriesAt(entries, samplePositions(size, capacity, random));
+            }
+            positions[kept++] = (int) position;
+        }
+        return getEntriesAt(entries, Arrays.copyOf(positions, kept));
+    }
+
+    /**
+     * Retrieves the entries at the given positions, in the order of the loot.
+     *
+     * @param entries   The loot entries of the player, oldest first.
+     * @param positions The positions of the selected entries, sorted in place.
+     * @return The selected entries, oldest first.
+     */
+    private static List<LootEntry> getEntriesAt(List<LootEntry> entries, int[] positions) {
+        Arrays.sort(positions);
+        List<LootEntry> selected = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            selected.add(entries.get(position));
+        }
+        return selected;
+    }
+
+    /**
+     * Draws distinct positions uniformly with Floyd's algorithm, using one random number per position.
+     *
+     * @param size   The number of positions to draw from.
+     * @param count  The number of positions to draw, at most size.
+     * @param random The random number generator to use.
+     * @return The drawn positions, in no particular order.
+     */
+    private static int[] samplePositions(int size, int count, SplittableRandom random) {
+        IntOpenHashSet sampled = new IntOpenHashSet(count);
+        for (int last = size - count; last < size; last++) {
+            int sampledPosition = random.nextInt(last + 1);
+            if (!sampled.add(sampledPosition)) {
+                sampled.add(last);
+            }
+        }
+        return sampled.toIntArray();
+    }
+
+    /**
+     * Samples entries without replacement with a chance proportional to their price, keeping the entries with
+     * the highest keys {@code log(u) / price} in a bounded min-heap.
+     *
+     * @param entries     The loot entries of the player.
+     * @param probability The probability of an entry being offered, between 0 and 1.
+     * @param maxOffers   The maximum number of entries to select.
+     * @param random      The random number generator to use.
+     * @return The selected entries, most likely first.
+     */
+    private static List<LootEntry> selectValueWeighted(Collection<LootEntry> entries, double probability, int maxOffers,
+                                                       SplittableRandom random) {
+        int count = (int) Math.min(maxOffers, Math.ceil(entries.size() * probability));
+        PriorityQueue<WeightedEntry> heap = new PriorityQueue<>(count, Comparator.comparingDouble(WeightedEntry::key));
+        for (LootEntry entry : entries) {
+            double key = Math.log(random.nextDouble()) / Math.max(1, entry.getPrice());
+            if (heap.size() < count) {
+                heap.add(new WeightedEntry(key, entry));
+            } else if (key > heap.peek().key()) {
+                heap.poll();
+                heap.add(new WeightedEntry(key, entry));
+            }
+        }
+
+        LootEntry[] selected = new LootEntry[heap.size()];
+        for (int i = selected.length - 1; i >= 0; i--) {
+            selected[i] = heap.poll().entry();
+        }
+        return new ArrayList<>(Arrays.asList(selected));
+    }
+
+    /**
+     * A loot entry kept by the random selection.
+     *
+     * @param position The position of the entry in the player's loot.
+     * @param entry    The loot entry.
+     */
+    private record KeptEntry(int position, LootEntry entry) {
+    }
+
+    /**
+     * A loot entry with its sampling key.
+     *
+     * @param key   The sampling key of the entry.
+     * @param entry The loot entry.
+     */
+    private record WeightedEntry(double key, LootEntry entry) {
+    }
+}
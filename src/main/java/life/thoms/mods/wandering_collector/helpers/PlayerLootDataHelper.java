@@ -16,100 +16,137 @@
 
 package life.thoms.mods.wandering_collector.helpers;
 
-import life.thoms.mods.wandering_collector.constants.ModConstants;
-import life.thoms.mods.wandering_collector.utils.CustomLootDataUtil;
-import net.minecraft.world.entity.player.Player;
+import life.thoms.mods.wandering_collector.data.LootEntry;
+import life.thoms.mods.wandering_collector.data.LootExpiryScheduler;
+import life.thoms.mods.wandering_collector.data.LootMergeKey;
+import life.thoms.mods.wandering_collector.data.PlayerLootLedger;
+import life.thoms.mods.wandering_collector.jfr.StackMergeEvent;
+import life.thoms.mods.wandering_collector.utils.ModMetrics;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 /**
  * Helper class for managing player loot data.
+ *
+ * <p>The given ledgers must be used while holding their owner's lock, see
+ * {@link life.thoms.mods.wandering_collector.data.LootPersistenceManager#updatePlayerLoot}.</p>
  */
 public class PlayerLootDataHelper {
 
     /**
      * Handles the addition of stackable loot to a player's inventory.
      *
-     * @param currentPlayerLoot the current loot of the player
+     * <p>The stack is first merged into the entries of the same item and components that still have
+     * stack space and price headroom, the rest is split into new entries.</p>
+     *
+     * @param currentPlayerLoot the current loot ledger of the player
      * @param eventStack the stack of items to be added
-     * @param player the player to whom the loot belongs
+     * @param owner the UUID of the player to whom the loot belongs
+     * @param gameTime the current game time in ticks
      */
-    public static void handleStackableLoot(List<ItemStack> currentPlayerLoot, ItemStack eventStack, Player player) {
+    public static void handleStackableLoot(PlayerLootLedger currentPlayerLoot, ItemStack eventStack, UUID owner, long gameTime) {
         if (eventStack.getCount() <= 0) return;
 
-        int maxPrice = 640;
-        int price = StackPriceCalculator.getStackPrice(eventStack);
-        int stackSize = eventStack.getCount();
-        int pricePerItem = price / stackSize;
-
-        for (ItemStack stackFromList : currentPlayerLoot) {
-            if (stackFromList.getItem().equals(eventStack.getItem())) {
-                int priceFromList = StackPriceCalculator.getStackPrice(stackFromList);
-                int stackSizeFromList = stackFromList.getCount();
-                int maxStackSize = stackFromList.getMaxStackSize();
-
-                if (stackSizeFromList >= maxStackSize) continue;
-
-                if (maxStackSize >= stackSize + stackSizeFromList && maxPrice >= price + priceFromList) {
-                    stackFromList.setCount(stackSizeFromList + stackSize);
-                    return;
-                } else {
-                    int allowedAmountBySize = maxStackSize - stackSizeFromList;
-                    int allowedAmountByPrice = (pricePerItem > 0)
-                            ? (maxPrice - priceFromList) / pricePerItem
-                            : 0;
-                    int allowedAmount = Math.min(allowedAmountBySize, allowedAmountByPrice);
-                    int additionAmount = Math.min(stackSize, allowedAmount);
-
-                    stackFromList.setCount(stackSizeFromList + additionAmount);
-                    eventStack.setCount(stackSize - additionAmount);
-
-                    if (eventStack.getCount() <= 0) {
-                        return;
-                    }
-                }
+        StackMergeEvent mergeEvent = new StackMergeEvent();
+        mergeEvent.begin();
+        int initialCount = eventStack.getCount();
+        int mergedEntries = 0;
+        int newEntries = 0;
+
+        Item item = eventStack.getItem();
+        int enchantmentCount = StackPriceCalculator.getEnchantmentCount(eventStack);
+
+        for (LootEntry entryFromList : List.copyOf(currentPlayerLoot.getOpenEntries(LootMergeKey.of(eventStack)))) {
+            int stackSize = eventStack.getCount();
+            int price = StackPriceCalculator.getStackPrice(item, stackSize, enchantmentCount);
+            int pricePerItem = price / stackSize;
+            int stackSizeFromList = entryFromList.getCount();
+            int allowedAmountBySize = entryFromList.getRemainingCount();
+            int priceHeadroom = entryFromList.getPriceHeadroom();
+
+            if (allowedAmountBySize >= stackSize && priceHeadroom >= price) {
+                currentPlayerLoot.setCount(entryFromList, stackSizeFromList + stackSize);
+                ModMetrics.increment(ModMetrics.STACKABLE_MERGES);
+                commitMergeEvent(mergeEvent, owner, item, initialCount, mergedEntries + 1, newEntries);
+                return;
+            }
+
+            int allowedAmountByPrice = (pricePerItem > 0)
+                    ? priceHeadroom / pricePerItem
+                    : 0;
+            int additionAmount = Math.min(stackSize, Math.min(allowedAmountBySize, allowedAmountByPrice));
+            if (additionAmount <= 0) continue;
+
+            currentPlayerLoot.setCount(entryFromList, stackSizeFromList + additionAmount);
+            eventStack.setCount(stackSize - additionAmount);
+            ModMetrics.increment(ModMetrics.STACKABLE_MERGES);
+            mergedEntries++;
+
+            if (eventStack.getCount() <= 0) {
+                commitMergeEvent(mergeEvent, owner, item, initialCount, mergedEntries, newEntries);
+                return;
             }
         }
 
         int remainingStackSize = eventStack.getCount();
         while (remainingStackSize > 0) {
-            int remainingPrice = StackPriceCalculator.getStackPrice(eventStack);
+            int remainingPrice = StackPriceCalculator.getStackPrice(item, remainingStackSize, enchantmentCount);
             int pricePerItemRemaining = remainingPrice / remainingStackSize;
 
-            int allowedAmountByPrice = (maxPrice / pricePerItemRemaining);
-            int amountToAdd = Math.min(remainingStackSize, allowedAmountByPrice);
+            int allowedAmountByPrice = pricePerItemRemaining > 0 ? LootEntry.MAX_PRICE / pricePerItemRemaining : remainingStackSize;
+            int amountToAdd = Math.max(1, Math.min(Math.min(remainingStackSize, eventStack.getMaxStackSize()), allowedAmountByPrice));
 
             ItemStack newStack = eventStack.copy();
             newStack.setCount(amountToAdd);
 
-            ItemStack stackWithCustomData = CustomLootDataUtil.addStackCustomData(newStack, player.level().getGameTime());
-            PlayerLootDataHelper.addNewItemToPlayerLoot(player, stackWithCustomData);
+            LootEntry entry = LootEntry.capture(newStack, owner, gameTime);
+            PlayerLootDataHelper.addNewItemToPlayerLoot(currentPlayerLoot, entry);
+            ModMetrics.increment(ModMetrics.STACKABLE_SPLITS);
+            newEntries++;
 
             remainingStackSize -= amountToAdd;
             eventStack.setCount(remainingStackSize);
         }
+        commitMergeEvent(mergeEvent, owner, item, initialCount, mergedEntries, newEntries);
     }
 
     /**
-     * Adds a new item stack to a player's loot.
+     * Commits a stack merge event if JFR is recording it.
      *
-     * @param player the player to whom the loot belongs
-     * @param stack the item stack to add
+     * @param mergeEvent    the started merge event
+     * @param owner         the UUID of the player to whom the loot belongs
+     * @param item          the item of the stack
+     * @param count         the number of items in the stack
+     * @param mergedEntries the number of existing entries the stack was merged into
+     * @param newEntries    the number of entries created for the rest of the stack
      */
-    public static void addNewItemToPlayerLoot(Player player, ItemStack stack) {
-        List<ItemStack> playerLoot = ModConstants.SERVER_LOOT.getOrDefault(player.getUUID(), new ArrayList<>());
-        UUID stackUniqueIdentifier = CustomLootDataUtil.getStackUniqueIdentifier(stack);
+    private static void commitMergeEvent(StackMergeEvent mergeEvent, UUID owner, Item item, int count, int mergedEntries, int newEntries) {
+        mergeEvent.end();
+        if (mergeEvent.shouldCommit()) {
+            mergeEvent.player = owner.toString();
+            mergeEvent.item = BuiltInRegistries.ITEM.getKey(item).toString();
+            mergeEvent.count = count;
+            mergeEvent.mergedEntries = mergedEntries;
+            mergeEvent.newEntries = newEntries;
+            mergeEvent.commit();
+        }
+    }
 
-        if (ItemValueFilter.filterValuableItems(stack)) {
-            if (CustomLootDataUtil.isUniqueIdentifierInList(stackUniqueIdentifier, playerLoot)) {
-                return;
+    /**
+     * Adds a new loot entry to a player's loot.
+     *
+     * @param playerLoot the loot ledger of the player to whom the loot belongs
+     * @param entry the loot entry to add
+     */
+    public static void addNewItemToPlayerLoot(PlayerLootLedger playerLoot, LootEntry entry) {
+        if (ItemValueFilter.filterValuableItems(entry.getStack())) {
+            if (playerLoot.add(entry)) {
+                LootExpiryScheduler.schedule(entry);
             }
-
-            playerLoot.add(stack);
-            ModConstants.SERVER_LOOT.put(player.getUUID(), playerLoot);
         }
     }
 }
@@ -17,16 +17,28 @@
 package life.thoms.mods.wandering_collector.helpers;
 
 import life.thoms.mods.wandering_collector.config.WanderingCollectorConfig;
-import net.minecraft.world.item.*;
-
-import static life.thoms.mods.wandering_collector.utils.ItemFilterUtil.*;
+import life.thoms.mods.wandering_collector.utils.ConfiguredPriceTable;
+import life.thoms.mods.wandering_collector.utils.ItemClassification;
+import life.thoms.mods.wandering_collector.utils.ItemClassificationTable;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
 
 /**
  * Calculator for determining the price of item stacks based on their type and properties.
+ *
+ * <p>The price of a stack is split into a unit price per item, precomputed for every registered item from its
+ * {@link ItemClassificationTable} entry, its configured price and the base price, plus a surcharge for its
+ * enchantments. The table is rebuilt whenever the config, tags or registries change, so pricing a stack with
+ * a known enchantment count is constant-time arithmetic.</p>
  */
 public class StackPriceCalculator {
 
-    private static final int basePrice = WanderingCollectorConfig.BASE_PRICE_OF_LOST_ITEM_IN_TRADE.get();
+    private static final byte PER_ITEM = 0;
+    private static final byte PER_STACK = 1;
+    private static final byte FLAT = 2;
+
+    private static volatile PriceTable priceTable = new PriceTable(-1, new int[0], new byte[0]);
 
     /**
      * Calculates the price of a given item stack.
@@ -35,100 +47,110 @@ public class StackPriceCalculator {
      * @return the calculated price of the item stack
      */
     public static int getStackPrice(ItemStack stack) {
-        if (isEnchantedBook(stack)) {
-            return basePrice;
+        return getStackPrice(stack.getItem(), stack.getCount(), getEnchantmentCount(stack));
+    }
+
+    /**
+     * Calculates the price of a stack from its item, count and number of enchantments.
+     *
+     * @param item             the item of the stack
+     * @param count            the number of items in the stack
+     * @param enchantmentCount the number of enchantments on the stack
+     * @return the calculated price of the stack
+     */
+    public static int getStackPrice(Item item, int count, int enchantmentCount) {
+        PriceTable table = priceTable;
+        int id = BuiltInRegistries.ITEM.getId(item);
+        if (id < 0 || id >= table.unitPrices().length) {
+            table = compile(getBasePrice(), new Item[]{item});
+            id = 0;
         }
 
-        int price = basePrice;
+        int unitPrice = table.unitPrices()[id];
+        return switch (table.pricingModes()[id]) {
+            case PER_ITEM -> unitPrice * count + enchantmentCount * table.basePrice() * 2;
+            case PER_STACK -> unitPrice + enchantmentCount * table.basePrice() * 2;
+            default -> unitPrice;
+        };
+    }
+
+    /**
+     * Counts the enchantments of a stack, which only has to be done once per stack since they don't change.
+     *
+     * @param stack the item stack to count the enchantments of
+     * @return the number of enchantments on the stack
+     */
+    public static int getEnchantmentCount(ItemStack stack) {
+        return stack.isEnchanted() ? stack.getEnchantments().size() : 0;
+    }
 
-        int configPrice = getConfiguredPrice(stack);
-        if (configPrice != -1) {
-            price = configPrice * stack.getCount();
-            if (isEnchanted(stack)) {
-                price += stack.getEnchantments().size() * basePrice * 2;
+    /**
+     * Rebuilds the unit price of every registered item from the current config, tags and item classifications.
+     */
+    public static void rebuild() {
+        Item[] items = new Item[BuiltInRegistries.ITEM.size()];
+        for (Item item : BuiltInRegistries.ITEM) {
+            int id = BuiltInRegistries.ITEM.getId(item);
+            if (id >= 0 && id < items.length) {
+                items[id] = item;
             }
-            return price;
         }
+        priceTable = compile(getBasePrice(), items);
+    }
+
+    /**
+     * Computes the unit price and pricing mode of the given items.
+     *
+     * <p>Enchanted books always cost the base price, fishing rods half of it, and neither gets an enchantment surcharge.
+     * Configured prices are per item, otherwise the price follows the item classification.</p>
+     *
+     * @param basePrice the base price of lost items
+     * @param items     the items to price, indexed the same way as the resulting table
+     * @return the price table of the items
+     */
+    private static PriceTable compile(int basePrice, Item[] items) {
+        int[] unitPrices = new int[items.length];
+        byte[] pricingModes = new byte[items.length];
 
-        if (isWeapon(stack)) {
-            Item item = stack.getItem();
+        for (int i = 0; i < items.length; i++) {
+            if (items[i] == null) continue;
 
-            if (item instanceof BowItem || item instanceof CrossbowItem || item instanceof TridentItem) {
-                price += basePrice * 4;
-            } else {
-                price *= 2;
-                SwordItem sword = (SwordItem) stack.getItem();
-                if (sword.getTier().equals(Tiers.NETHERITE)) {
-                    price *= 2;
-                }
-            }
-        } else if (isArmor(stack)) {
-            if (stack.getItem() instanceof ElytraItem) {
-                price = basePrice * 20;
-            } else {
-                ArmorItem armor = (ArmorItem) stack.getItem();
-                short materialsPerArmor = 0;
-                switch (armor.getEquipmentSlot()) {
-                    case HEAD -> materialsPerArmor = 5;
-                    case CHEST -> materialsPerArmor = 8;
-                    case LEGS -> materialsPerArmor = 7;
-                    case FEET -> materialsPerArmor = 4;
-                }
-                price = basePrice * materialsPerArmor;
-                if (armor.getMaterial().equals(ArmorMaterials.NETHERITE)) {
-                    price *= 2;
-                }
-            }
-        } else if (isTool(stack)) {
-            if (stack.getItem() instanceof FishingRodItem) {
-                return Math.round((float) basePrice / 2);
-            }
+            ItemClassification classification = ItemClassificationTable.get(items[i]);
+            int configPrice = ConfiguredPriceTable.getPrice(items[i]);
 
-            Tier tier = Tiers.WOOD;
-            short materialsPerArmor = 0;
-            Item tool = stack.getItem();
-            switch (tool) {
-                case PickaxeItem pickaxeItem -> {
-                    tier = pickaxeItem.getTier();
-                    materialsPerArmor = 3;
-                }
-                case AxeItem axeItem -> {
-                    tier = axeItem.getTier();
-                    materialsPerArmor = 3;
-                }
-                case ShovelItem shovelItem -> {
-                    tier = shovelItem.getTier();
-                    materialsPerArmor = 1;
-                }
-                case HoeItem hoeItem -> {
-                    tier = hoeItem.getTier();
-                    materialsPerArmor = 2;
-                }
-                default -> {
-                }
-            }
-            price = basePrice * materialsPerArmor;
-            if (tier.equals(Tiers.NETHERITE)) {
-                price *= 2;
-            }
-        } else {
-            Item item = stack.getItem();
-            if (item instanceof BlockItem) {
-                price = basePrice * 9;
-                if (item == Items.NETHERITE_BLOCK) {
-                    price *= 2;
-                }
-            }
-            if (item == Items.NETHERITE_INGOT) {
-                price *= 2;
+            if (classification.category() == ItemClassification.Category.ENCHANTED_BOOK) {
+                unitPrices[i] = basePrice;
+                pricingModes[i] = FLAT;
+            } else if (configPrice != -1) {
+                unitPrices[i] = configPrice;
+                pricingModes[i] = PER_ITEM;
+            } else if (classification.category() == ItemClassification.Category.FISHING_ROD) {
+                unitPrices[i] = Math.round((float) basePrice / 2);
+                pricingModes[i] = FLAT;
+            } else {
+                unitPrices[i] = basePrice * classification.priceUnits();
+                pricingModes[i] = classification.category().isPricedPerItem() ? PER_ITEM : PER_STACK;
             }
-            price *= stack.getCount();
         }
+        return new PriceTable(basePrice, unitPrices, pricingModes);
+    }
 
-        if (isEnchanted(stack)) {
-            price += stack.getEnchantments().size() * basePrice * 2;
-        }
+    /**
+     * Retrieves the current base price from the config.
+     *
+     * @return the base price of lost items
+     */
+    private static int getBasePrice() {
+        return WanderingCollectorConfig.BASE_PRICE_OF_LOST_ITEM_IN_TRADE.get();
+    }
 
-        return price;
+    /**
+     * Unit prices of items indexed by raw item registry id.
+     *
+     * @param basePrice    the base price the table was built with, used for enchantment surcharges
+     * @param unitPrices   the price of each item, per item or per stack depending on its pricing mode
+     * @param pricingModes whether each price is per item, per stack, or flat without enchantment surcharge
+     */
+    private record PriceTable(int basePrice, int[] unitPrices, byte[] pricingModes) {
     }
 }
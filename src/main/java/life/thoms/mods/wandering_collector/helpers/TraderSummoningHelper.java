@@ -17,63 +17,216 @@
 package life.thoms.mods.wandering_collector.helpers;
 
 import life.thoms.mods.wandering_collector.config.WanderingCollectorConfig;
-import life.thoms.mods.wandering_collector.constants.ModConstants;
+import life.thoms.mods.wandering_collector.data.VillageSummonCooldowns;
+import life.thoms.mods.wandering_collector.jfr.TraderSummonEvent;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.server.level.TicketType;
+import net.minecraft.util.RandomSource;
 import net.minecraft.world.entity.EntityType;
 import net.minecraft.world.entity.npc.WanderingTrader;
 import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.levelgen.Heightmap;
 
-import java.util.Random;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
 
 /**
  * Helper class for summoning Wandering Traders in the game.
+ *
+ * <p>Summoning never loads or generates chunks on the server thread. Candidate positions are only used if their
+ * chunk is already loaded at full status. If none is, a ticket is placed on a candidate chunk and the trader is
+ * spawned on a later tick, once the chunk has been loaded.</p>
+ *
+ * <p>The village cooldown only starts once a trader has actually spawned. While a summon is pending, the village
+ * can't be summoned for again, and a summon whose chunk didn't load in time is dropped without a cooldown.</p>
  */
 public class TraderSummoningHelper {
 
+    private static final int CHUNK_SIZE = 16;
+    private static final int MIN_DISTANCE_CHUNKS = 2;
+    private static final int CHUNK_RADIUS = 3;
+    private static final int MAX_CANDIDATES = 8;
+    private static final int SUMMON_TIMEOUT = 600;
+
+    private static final TicketType<ChunkPos> SUMMON_TICKET =
+            TicketType.create("wandering_collector_summon", Comparator.comparingLong(ChunkPos::toLong), SUMMON_TIMEOUT);
+
+    private static final List<PendingSummon> PENDING_SUMMONS = new ArrayList<>();
+
     /**
      * Summons a Wandering Trader at a specified position relative to a village.
      *
      * @param villageId  The unique ID of the village where the trader will be summoned.
      * @param pos        The position where the trader will be summoned.
-     * @param level      The current game level.
+     * @param level      The level of the village.
      * @param gameTime   The current game time in ticks.
      * @param player     The player requesting the trader summoning.
      */
-    public static void summonTrader(Long villageId, BlockPos pos, Level level, long gameTime, Player player) {
-        int chunkSize = 16;
-        Random random = new Random();
-        int minDistanceChunks = 2;
-        int chunkRadius = 3;
+    public static void summonTrader(long villageId, BlockPos pos, ServerLevel level, long gameTime, Player player) {
+        TraderSummonEvent summonEvent = new TraderSummonEvent();
+        summonEvent.begin();
+        long cooldownDuration = WanderingCollectorConfig.TRADER_SUMMONING_COOLDOWN_DURATION.get();
+        VillageSummonCooldowns villageCooldowns = VillageSummonCooldowns.get(level);
+        long villageCooldown = villageCooldowns.getCooldownStart(villageId);
+        if (villageCooldown != VillageSummonCooldowns.NO_COOLDOWN && gameTime < villageCooldown + cooldownDuration) {
+            Component textComponent = getVillageCooldownComponent(gameTime, villageCooldown);
+            player.sendSystemMessage(textComponent);
+            commitSummonEvent(summonEvent, player, villageId, "COOLDOWN", 0);
+            return;
+        }
+        if (isSummonPending(level.dimension(), villageId)) {
+            player.sendSystemMessage(Component.literal("A Wandering Trader has already been called, wait for him to arrive"));
+            commitSummonEvent(summonEvent, player, villageId, "PENDING", 0);
+            return;
+        }
 
-        int offsetX = (random.nextInt(2 * minDistanceChunks + chunkRadius) - minDistanceChunks) * chunkSize;
-        int offsetZ = (random.nextInt(2 * minDistanceChunks + chunkRadius) - minDistanceChunks) * chunkSize;
+        RandomSource random = level.getRandom();
+        int firstX = 0;
+        int firstZ = 0;
+        for (int i = 0; i < MAX_CANDIDATES; i++) {
+            int newX = pos.getX() + (random.nextInt(2 * MIN_DISTANCE_CHUNKS + CHUNK_RADIUS) - MIN_DISTANCE_CHUNKS) * CHUNK_SIZE;
+            int newZ = pos.getZ() + (random.nextInt(2 * MIN_DISTANCE_CHUNKS + CHUNK_RADIUS) - MIN_DISTANCE_CHUNKS) * CHUNK_SIZE;
+            if (isChunkReady(level, newX, newZ) && spawnTrader(level, newX, newZ, pos)) {
+                villageCooldowns.startCooldown(villageId, gameTime);
+                player.sendSystemMessage(Component.literal("Wandering Trader is on his way"));
+                commitSummonEvent(summonEvent, player, villageId, "SPAWNED", i + 1);
+                return;
+            }
+            if (i == 0) {
+                firstX = newX;
+                firstZ = newZ;
+            }
+        }
 
-        int newX = pos.getX() + offsetX;
-        int newZ = pos.getZ() + offsetZ;
-        int newY = level.getHeight(Heightmap.Types.WORLD_SURFACE, newX, newZ);
+        ChunkPos chunkPos = new ChunkPos(BlockPos.containing(firstX, 0, firstZ));
+        level.getChunkSource().addRegionTicket(SUMMON_TICKET, chunkPos, 1, chunkPos);
+        PENDING_SUMMONS.add(new PendingSummon(level.dimension(), villageId, player.getUUID(), chunkPos, firstX, firstZ, pos,
+                gameTime + SUMMON_TIMEOUT));
+        commitSummonEvent(summonEvent, player, villageId, "TICKETED", MAX_CANDIDATES);
+    }
 
-        WanderingTrader wanderingTrader = new WanderingTrader(EntityType.WANDERING_TRADER, level);
-        wanderingTrader.setPos(newX, newY, newZ);
-
-        for (Long listStructure : ModConstants.VILLAGE_SUMMON_COOLDOWN.keySet()) {
-            if (listStructure.equals(villageId)) {
-                Long villageCooldown = ModConstants.VILLAGE_SUMMON_COOLDOWN.get(villageId);
-                if (gameTime < villageCooldown + WanderingCollectorConfig.TRADER_SUMMONING_COOLDOWN_DURATION.get()) {
-                    Component textComponent = getVillageCooldownComponent(gameTime, villageCooldown);
-                    player.sendSystemMessage(textComponent);
-                    return;
+    /**
+     * Spawns the pending traders whose chunk has finished loading, starting the cooldown of their village,
+     * and drops those that timed out. The player who rang the bell is told either way, if still online.
+     *
+     * @param server   The server the traders are summoned on.
+     * @param gameTime The current game time.
+     */
+    public static void tick(MinecraftServer server, long gameTime) {
+        if (PENDING_SUMMONS.isEmpty()) return;
+
+        Iterator<PendingSummon> iterator = PENDING_SUMMONS.iterator();
+        while (iterator.hasNext()) {
+            PendingSummon summon = iterator.next();
+            ServerLevel level = server.getLevel(summon.dimension());
+            if (level == null) {
+                iterator.remove();
+                continue;
+            }
+
+            boolean chunkReady = isChunkReady(level, summon.x(), summon.z());
+            if (chunkReady || gameTime >= summon.expiresAt()) {
+                boolean spawned = chunkReady && spawnTrader(level, summon.x(), summon.z(), summon.wanderTarget());
+                level.getChunkSource().removeRegionTicket(SUMMON_TICKET, summon.chunkPos(), 1, summon.chunkPos());
+                iterator.remove();
+
+                if (spawned) {
+                    VillageSummonCooldowns.get(level).startCooldown(summon.villageId(), gameTime);
+                }
+                ServerPlayer player = server.getPlayerList().getPlayer(summon.playerUUID());
+                if (player != null) {
+                    player.sendSystemMessage(Component.literal(spawned
+                            ? "Wandering Trader is on his way"
+                            : "No Wandering Trader could reach the village, try ringing the bell again"));
                 }
             }
         }
-        ModConstants.VILLAGE_SUMMON_COOLDOWN.put(villageId, gameTime);
-        level.addFreshEntity(wanderingTrader);
+    }
+
+    /**
+     * Drops the pending summons, used once the server has stopped.
+     */
+    public static void clear() {
+        PENDING_SUMMONS.clear();
+    }
+
+    /**
+     * Commits a trader summon event if JFR is recording it.
+     *
+     * @param summonEvent The started summon event.
+     * @param player      The player who rang the bell.
+     * @param villageId   The id of the village.
+     * @param outcome     What the summon resulted in.
+     * @param candidates  The number of candidate positions tried.
+     */
+    private static void commitSummonEvent(TraderSummonEvent summonEvent, Player player, long villageId, String outcome, int candidates) {
+        summonEvent.end();
+        if (summonEvent.shouldCommit()) {
+            summonEvent.player = player.getStringUUID();
+            summonEvent.village = villageId;
+            summonEvent.outcome = outcome;
+            summonEvent.candidates = candidates;
+            summonEvent.commit();
+        }
+    }
+
+    /**
+     * Checks if a trader is still waiting for its chunk to load for a village.
+     *
+     * @param dimension The dimension of the village.
+     * @param villageId The id of the village.
+     * @return True if a summon is pending for the village, false otherwise.
+     */
+    private static boolean isSummonPending(ResourceKey<Level> dimension, long villageId) {
+        for (PendingSummon summon : PENDING_SUMMONS) {
+            if (summon.villageId() == villageId && summon.dimension() == dimension) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the chunk of a position is loaded at full status, without loading it.
+     *
+     * @param level The level of the position.
+     * @param x     The X coordinate of the position.
+     * @param z     The Z coordinate of the position.
+     * @return True if the chunk is ready for a trader to spawn in, false otherwise.
+     */
+    private static boolean isChunkReady(ServerLevel level, int x, int z) {
+        return level.getChunkSource().getChunkNow(x >> 4, z >> 4) != null;
+    }
+
+    /**
+     * Spawns a Wandering Trader on the surface of a loaded position and sends it towards the bell.
+     *
+     * @param level        The level to spawn the trader in.
+     * @param x            The X coordinate of the trader.
+     * @param z            The Z coordinate of the trader.
+     * @param wanderTarget The position of the bell.
+     * @return True if the trader was added to the level, false if its spawn was cancelled.
+     */
+    private static boolean spawnTrader(ServerLevel level, int x, int z, BlockPos wanderTarget) {
+        int y = level.getHeight(Heightmap.Types.WORLD_SURFACE, x, z);
+        WanderingTrader wanderingTrader = new WanderingTrader(EntityType.WANDERING_TRADER, level);
+        wanderingTrader.setPos(x, y, z);
+        if (!level.addFreshEntity(wanderingTrader)) {
+            return false;
+        }
         wanderingTrader.spawnAnim();
-        wanderingTrader.setWanderTarget(pos);
-        Component textComponent = Component.literal("Wandering Trader is on his way");
-        player.sendSystemMessage(textComponent);
+        wanderingTrader.setWanderTarget(wanderTarget);
+        return true;
     }
 
     /**
@@ -83,7 +236,7 @@ public class TraderSummoningHelper {
      * @param villageCooldown The last time a trader was summoned for the village.
      * @return A chat component containing the cooldown message.
      */
-    private static Component getVillageCooldownComponent(long gameTime, Long villageCooldown) {
+    private static Component getVillageCooldownComponent(long gameTime, long villageCooldown) {
         String timeMetric = " seconds";
         long timeLeft = (WanderingCollectorConfig.TRADER_SUMMONING_COOLDOWN_DURATION.get()
                 - (gameTime - villageCooldown));
@@ -101,4 +254,20 @@ public class TraderSummoningHelper {
         }
         return Component.literal("There aren't any new traders nearby, come back in " + timeLeft + timeMetric);
     }
+
+    /**
+     * A trader waiting for its chunk to load.
+     *
+     * @param dimension    The dimension of the village.
+     * @param villageId    The id of the village.
+     * @param playerUUID   The UUID of the player who rang the bell.
+     * @param chunkPos     The chunk holding the summon ticket.
+     * @param x            The X coordinate of the trader.
+     * @param z            The Z coordinate of the trader.
+     * @param wanderTarget The position of the bell.
+     * @param expiresAt    The game time after which the summon is dropped.
+     */
+    private record PendingSummon(ResourceKey<Level> dimension, long villageId, UUID playerUUID, ChunkPos chunkPos,
+                                 int x, int z, BlockPos wanderTarget, long expiresAt) {
+    }
 }
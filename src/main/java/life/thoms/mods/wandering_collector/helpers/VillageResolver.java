@@ -0,0 +1,152 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.helpers;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ReferenceSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Registry;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.levelgen.structure.Structure;
+import net.minecraft.world.level.levelgen.structure.structures.JigsawStructure;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resolves the village a block position belongs to, used by bell summoning.
+ *
+ * <p>Village structures are indexed once per registry load, so checking a structure is a set lookup instead of
+ * building its biome tag name. The village of each chunk is cached per level until the chunk is unloaded.</p>
+ *
+ * <p>Only used on the server thread.</p>
+ */
+public class VillageResolver {
+
+    private static final long NO_VILLAGE = Long.MAX_VALUE;
+    private static final long NOT_CACHED = Long.MIN_VALUE;
+
+    private static volatile ReferenceSet<Structure> villageStructures = null;
+    private static final Map<ResourceKey<Level>, Long2LongMap> CHUNK_VILLAGES = new HashMap<>();
+
+    /**
+     * Retrieves the village the given position belongs to.
+     *
+     * @param level The level of the position.
+     * @param pos   The position.
+     * @return The village id, the chunk position of the village's start, or null if the position is not in a village.
+     */
+    public static Long getVillageId(Level level, BlockPos pos) {
+        Long2LongMap chunkVillages = CHUNK_VILLAGES.computeIfAbsent(level.dimension(), dimension -> {
+            Long2LongMap map = new Long2LongOpenHashMap();
+            map.defaultReturnValue(NOT_CACHED);
+            return map;
+        });
+
+        long chunkPos = ChunkPos.asLong(pos);
+        long villageId = chunkVillages.get(chunkPos);
+        if (villageId == NOT_CACHED) {
+            villageId = findVillageId(level, pos);
+            chunkVillages.put(chunkPos, villageId);
+        }
+        return villageId != NO_VILLAGE ? villageId : null;
+    }
+
+    /**
+     * Evicts the cached village of an unloaded chunk.
+     *
+     * @param dimension The dimension of the chunk.
+     * @param chunkPos  The position of the chunk.
+     */
+    public static void onChunkUnloaded(ResourceKey<Level> dimension, ChunkPos chunkPos) {
+        Long2LongMap chunkVillages = CHUNK_VILLAGES.get(dimension);
+        if (chunkVillages != null) {
+            chunkVillages.remove(chunkPos.toLong());
+        }
+    }
+
+    /**
+     * Evicts every cached village, used once the server has stopped.
+     */
+    public static void clear() {
+        CHUNK_VILLAGES.clear();
+    }
+
+    /**
+     * Indexes the village structures of the structure registry, used when the registries are loaded.
+     *
+     * @param registryAccess The loaded registries.
+     */
+    public static void rebuild(RegistryAccess registryAccess) {
+        registryAccess.registry(Registries.STRUCTURE).ifPresent(VillageResolver::rebuild);
+    }
+
+    /**
+     * Indexes the village structures of the given structure registry.
+     *
+     * @param structures The structure registry.
+     */
+    private static void rebuild(Registry<Structure> structures) {
+        ReferenceSet<Structure> villages = new ReferenceOpenHashSet<>();
+        for (Structure structure : structures) {
+            if (isVillage(structure)) {
+                villages.add(structure);
+            }
+        }
+        villageStructures = villages;
+        CHUNK_VILLAGES.clear();
+    }
+
+    /**
+     * Finds the first village structure referenced by the chunk of the given position.
+     *
+     * @param level The level of the position.
+     * @param pos   The position.
+     * @return The village id, or NO_VILLAGE if the chunk does not reference a village.
+     */
+    private static long findVillageId(Level level, BlockPos pos) {
+        ReferenceSet<Structure> villages = villageStructures;
+        for (Map.Entry<Structure, LongSet> reference : level.getChunk(pos).getAllReferences().entrySet()) {
+            Structure structure = reference.getKey();
+            boolean village = villages != null ? villages.contains(structure) : isVillage(structure);
+            if (village && !reference.getValue().isEmpty()) {
+                return reference.getValue().iterator().nextLong();
+            }
+        }
+        return NO_VILLAGE;
+    }
+
+    /**
+     * Checks if a structure is a village, a jigsaw structure generated in a village biome tag.
+     *
+     * @param structure The structure to check.
+     * @return True if the structure is a village, false otherwise.
+     */
+    private static boolean isVillage(Structure structure) {
+        return structure instanceof JigsawStructure jigsawStructure
+                && jigsawStructure.biomes().unwrapKey()
+                .map(tagKey -> tagKey.location().toString().contains("village"))
+                .orElse(false);
+    }
+}
@@ -18,10 +18,18 @@ package life.thoms.mods.wandering_collector.helpers;
 
 import life.thoms.mods.wandering_collector.config.WanderingCollectorConfig;
 import life.thoms.mods.wandering_collector.constants.ModConstants;
-import life.thoms.mods.wandering_collector.utils.CustomLootDataUtil;
-import net.minecraft.core.HolderLookup;
+import life.thoms.mods.wandering_collector.data.LootEntry;
+import life.thoms.mods.wandering_collector.data.LootPersistenceManager;
+import life.thoms.mods.wandering_collector.data.PlayerLootLedger;
+import life.thoms.mods.wandering_collector.data.TraderOfferCache;
+import life.thoms.mods.wandering_collector.jfr.TraderNbtReadEvent;
+import life.thoms.mods.wandering_collector.jfr.TraderOfferEvent;
+import life.thoms.mods.wandering_collector.utils.ModMetrics;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.LongArrayTag;
 import net.minecraft.nbt.Tag;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.entity.npc.WanderingTrader;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.item.ItemStack;
@@ -37,11 +45,10 @@ import java.util.*;
  */
 public class WanderingTraderHelper {
 
-    private static final Random random = new Random();
-    private static final double probability = WanderingCollectorConfig.PROBABILITY_OF_LOST_ITEM_IN_TRADE.get();
-
     /**
      * Manages custom trades for a Wandering Trader based on the player's inventory.
+     * <p>Whenever the player's section of the trader's NBT data is rewritten, the sections of the other players
+     * are pruned as well, outside of the player's lock.</p>
      *
      * @param player The player interacting with the trader.
      * @param trader The Wandering Trader being interacted with.
@@ -49,20 +56,61 @@ public class WanderingTraderHelper {
     public static void manageTraderCustomTrades(Player player, WanderingTrader trader) {
         UUID playerUUID = player.getUUID();
         MerchantOffers offers = getMerchantOffers(trader);
+        Tag sectionBefore = trader.getPersistentData().getCompound(ModConstants.TRADER_PLAYER_TRADES).get(playerUUID.toString());
 
         if (hasPlayerAlreadyInteracted(playerUUID, trader)) {
-            Map<Tag, ItemStack> tradeItems = getTradeLostItemsFromNbt(player, trader);
-            List<ItemStack> playerLoot = ModConstants.SERVER_LOOT.getOrDefault(player.getUUID(), new ArrayList<>());
-            for (Tag key : tradeItems.keySet()) {
-                ItemStack stack = tradeItems.get(key);
-                UUID stackUniqueIdentifier = CustomLootDataUtil.getStackUniqueIdentifier(stack);
-                if (CustomLootDataUtil.isUniqueIdentifierInList(stackUniqueIdentifier, playerLoot)) {
-                    offers.add(generateCustomMerchantOffer(stack));
-                }
-            }
+            offers.addAll(LootPersistenceManager.computePlayerLoot(player.getServer(), playerUUID,
+                    playerLoot -> getLostItemOffers(player, trader, playerLoot)));
         } else {
             generateLostItemTrades(player, trader);
         }
+
+        Tag sectionAfter = trader.getPersistentData().getCompound(ModConstants.TRADER_PLAYER_TRADES).get(playerUUID.toString());
+        if (sectionAfter != sectionBefore) {
+            pruneStalePlayerTrades(player.getServer(), trader, playerUUID);
+        }
+    }
+
+    /**
+     * Retrieves the lost item offers the trader already made to the player.
+     * <p>The cached offers are returned as long as the player's loot has not changed since they were built,
+     * otherwise they are rebuilt for the entries still in the loot, and the entries that were bought or expired
+     * are dropped from the trader's NBT data.</p>
+     *
+     * @param player     The player interacting with the trader.
+     * @param trader     The Wandering Trader being interacted with.
+     * @param playerLoot The loot of the player.
+     * @return The offers for the lost items still in the player's loot.
+     */
+    private static List<MerchantOffer> getLostItemOffers(Player player, WanderingTrader trader, PlayerLootLedger playerLoot) {
+        TraderOfferCache.CachedOffers cachedOffers = TraderOfferCache.get(trader.getUUID(), player.getUUID());
+        if (cachedOffers != null && cachedOffers.isValidFor(playerLoot)) {
+            ModMetrics.increment(ModMetrics.OFFER_CACHE_HITS);
+            return cachedOffers.copyOffers();
+        }
+
+        long buildStart = ModMetrics.startTimer();
+        TraderOfferEvent offerEvent = new TraderOfferEvent();
+        offerEvent.begin();
+        List<UUID> entryIds = cachedOffers != null ? cachedOffers.entryIds() : getTradeLostItemIdsFromNbt(player, trader);
+        int maxOffers = WanderingCollectorConfig.MAX_LOST_ITEM_OFFERS_PER_PLAYER.get();
+        List<UUID> remainingIds = new ArrayList<>();
+        List<MerchantOffer> entryOffers = new ArrayList<>();
+        for (UUID entryId : entryIds) {
+            if (remainingIds.size() >= maxOffers) break;
+            LootEntry entry = playerLoot.get(entryId);
+            if (entry != null) {
+                remainingIds.add(entryId);
+                entryOffers.add(generateCustomMerchantOffer(entry));
+            }
+        }
+        if (cachedOffers == null || remainingIds.size() != entryIds.size()) {
+            writeTradeLostItemIdsToNbt(player.getUUID(), trader, remainingIds);
+        }
+        TraderOfferCache.put(trader.getUUID(), player.getUUID(), playerLoot, remainingIds, entryOffers);
+        ModMetrics.stopTimer(ModMetrics.OFFER_BUILD_TIME, buildStart);
+        commitOfferEvent(offerEvent, player.getUUID(), trader, false, playerLoot.size(), entryOffers.size());
+        return entryOffers;
     }
 
     /**
@@ -104,36 +152,145 @@ public class WanderingTraderHelper {
     }
 
     /**
-     * Retrieves trade items lost by the player from the trader's persistent NBT data.
+     * Retrieves the identifiers of the items lost by the player that the trader offered, from the trader's persistent NBT data.
+     * <p>Identifiers are stored as a packed long array per player, older traders stored a compound of stacks keyed by identifier.</p>
      *
      * @param player The player whose lost items are to be retrieved.
      * @param trader The Wandering Trader whose data is being accessed.
-     * @return A map of lost trade items, where each entry consists of the item's NBT tag and the corresponding ItemStack.
+     * @return The identifiers of the offered loot entries.
      */
-    private static Map<Tag, ItemStack> getTradeLostItemsFromNbt(Player player, WanderingTrader trader) {
-        Map<Tag, ItemStack> stackMap = new HashMap<>();
+    private static List<UUID> getTradeLostItemIdsFromNbt(Player player, WanderingTrader trader) {
+        TraderNbtReadEvent readEvent = new TraderNbtReadEvent();
+        readEvent.begin();
         CompoundTag traderPersistentData = trader.getPersistentData();
         CompoundTag playerTrades = traderPersistentData.getCompound(ModConstants.TRADER_PLAYER_TRADES);
 
-        if (playerTrades.isEmpty()) {
-            return stackMap;
+        Tag playerTradeItems = playerTrades.get(player.getStringUUID());
+        List<UUID> entryIds = readTradeLostItemIds(playerTradeItems);
+
+        readEvent.end();
+        if (readEvent.shouldCommit()) {
+            readEvent.player = player.getStringUUID();
+            readEvent.trader = trader.getStringUUID();
+            readEvent.entryIds = entryIds.size();
+            readEvent.legacyFormat = playerTradeItems instanceof CompoundTag;
+            readEvent.commit();
         }
 
-        CompoundTag playerTradeItems = playerTrades.getCompound(player.getStringUUID());
-        if (playerTradeItems.isEmpty()) {
-            return stackMap;
+        return entryIds;
+    }
+
+    /**
+     * Stores the identifiers of the items lost by the player that the trader offers in the trader's persistent NBT data.
+     *
+     * @param playerUUID The UUID of the player who lost the items.
+     * @param trader     The Wandering Trader whose data is being written.
+     * @param entryIds   The identifiers of the offered loot entries.
+     */
+    private static void writeTradeLostItemIdsToNbt(UUID playerUUID, WanderingTrader trader, List<UUID> entryIds) {
+        CompoundTag traderPersistentData = trader.getPersistentData();
+        CompoundTag playerTrades = traderPersistentData.getCompound(ModConstants.TRADER_PLAYER_TRADES);
+        playerTrades.putLongArray(playerUUID.toString(), packTradeLostItemIds(entryIds));
+        traderPersistentData.put(ModConstants.TRADER_PLAYER_TRADES, playerTrades);
+    }
+
+    /**
+     * Prunes the sections of the trader's NBT data that belong to other players.
+     * <p>Sections whose entries are no longer in their owner's loot are dropped, the others keep only the entries still
+     * in the loot, up to the maximum number of offers, and legacy sections of stacks are converted to packed
+     * identifiers. The loot of offline owners is read from disk if it isn't loaded.</p>
+     *
+     * @param server     The server the trader is on.
+     * @param trader     The Wandering Trader whose data is pruned.
+     * @param playerUUID The UUID of the player interacting with the trader, whose section was just written.
+     */
+    private static void pruneStalePlayerTrades(MinecraftServer server, WanderingTrader trader, UUID playerUUID) {
+        CompoundTag traderPersistentData = trader.getPersistentData();
+        CompoundTag playerTrades = traderPersistentData.getCompound(ModConstants.TRADER_PLAYER_TRADES);
+        int maxOffers = WanderingCollectorConfig.MAX_LOST_ITEM_OFFERS_PER_PLAYER.get();
+
+        for (String ownerKey : List.copyOf(playerTrades.getAllKeys())) {
+            if (ownerKey.equals(playerUUID.toString())) continue;
+
+            UUID ownerUUID = parseUUID(ownerKey);
+            List<UUID> entryIds = readTradeLostItemIds(playerTrades.get(ownerKey));
+            if (ownerUUID == null || entryIds.isEmpty()) {
+                playerTrades.remove(ownerKey);
+                continue;
+            }
+
+            List<UUID> remainingIds = LootPersistenceManager.computePlayerLoot(server, ownerUUID, ownerLoot -> {
+                List<UUID> ids = new ArrayList<>();
+                for (UUID entryId : entryIds) {
+                    if (ids.size() >= maxOffers) break;
+                    if (ownerLoot.contains(entryId)) {
+                        ids.add(entryId);
+                    }
+                }
+                return ids;
+            });
+            if (remainingIds.isEmpty()) {
+                playerTrades.remove(ownerKey);
+            } else if (remainingIds.size() != entryIds.size() || !(playerTrades.get(ownerKey) instanceof LongArrayTag)) {
+                playerTrades.putLongArray(ownerKey, packTradeLostItemIds(remainingIds));
+            }
         }
+        traderPersistentData.put(ModConstants.TRADER_PLAYER_TRADES, playerTrades);
+    }
 
-        HolderLookup.Provider provider = player.level().registryAccess();
-        for (String key : playerTradeItems.getAllKeys()) {
-            Tag stackTag = playerTradeItems.get(key);
-            if (stackTag != null) {
-                Optional<ItemStack> stackOpt = ItemStack.parse(provider, stackTag);
-                stackOpt.ifPresent(stack -> stackMap.put(stackTag, stack));
+    /**
+     * Reads the identifiers of the offered loot entries from a player's section of the trader's NBT data.
+     * <p>Legacy sections are compounds of stacks keyed by identifier, keys that aren't identifiers are skipped.</p>
+     *
+     * @param playerTradeItems The player's section, null if the player has none.
+     * @return The identifiers of the offered loot entries.
+     */
+    private static List<UUID> readTradeLostItemIds(Tag playerTradeItems) {
+        List<UUID> entryIds = new ArrayList<>();
+        if (playerTradeItems instanceof LongArrayTag packedIds) {
+            long[] ids = packedIds.getAsLongArray();
+            for (int i = 0; i + 1 < ids.length; i += 2) {
+                entryIds.add(new UUID(ids[i], ids[i + 1]));
+            }
+        } else if (playerTradeItems instanceof CompoundTag legacyStacks) {
+            for (String key : legacyStacks.getAllKeys()) {
+                UUID entryId = parseUUID(key);
+                if (entryId != null) {
+                    entryIds.add(entryId);
+                }
             }
         }
+        return entryIds;
+    }
 
-        return stackMap;
+    /**
+     * Packs identifiers into pairs of most and least significant bits.
+     *
+     * @param entryIds The identifiers of the offered loot entries.
+     * @return The packed identifiers.
+     */
+    private static long[] packTradeLostItemIds(List<UUID> entryIds) {
+        long[] packedIds = new long[entryIds.size() * 2];
+        for (int i = 0; i < entryIds.size(); i++) {
+            UUID entryId = entryIds.get(i);
+            packedIds[i * 2] = entryId.getMostSignificantBits();
+            packedIds[i * 2 + 1] = entryId.getLeastSignificantBits();
+        }
+        return packedIds;
+    }
+
+    /**
+     * Parses a UUID written by an earlier version, which may be malformed.
+     *
+     * @param value The string to parse.
+     * @return The UUID, or null if the string isn't one.
+     */
+    private static UUID parseUUID(String value) {
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 
     /**
@@ -144,38 +301,63 @@ public class WanderingTraderHelper {
      */
     private static void generateLostItemTrades(Player player, WanderingTrader trader) {
         UUID playerUUID = player.getUUID();
-        CompoundTag traderPersistentData = trader.getPersistentData();
         MerchantOffers offers = trader.getOffers();
-        CompoundTag playerTrades = traderPersistentData.getCompound(ModConstants.TRADER_PLAYER_TRADES);
-        List<ItemStack> playerLoot = ModConstants.SERVER_LOOT.getOrDefault(playerUUID, new ArrayList<>());
-        HolderLookup.Provider provider = player.level().registryAccess();
-        CompoundTag stackTags = new CompoundTag();
-
-        if (playerLoot != null) {
-            removeExpiredItems(playerLoot, player.level().getGameTime());
-            if (!playerLoot.isEmpty()) {
-                for (ItemStack stack : playerLoot) {
-                    UUID uuid = CustomLootDataUtil.getStackUniqueIdentifier(stack);
-                    if (uuid != null && random.nextInt(100) < probability) {
-                        offers.add(generateCustomMerchantOffer(stack));
-                        Tag stackTag = stack.save(provider);
-                        stackTags.put(uuid.toString(), stackTag);
-                    }
-                }
+        double probability = WanderingCollectorConfig.PROBABILITY_OF_LOST_ITEM_IN_TRADE.get() / 100.0;
+        int maxOffers = WanderingCollectorConfig.MAX_LOST_ITEM_OFFERS_PER_PLAYER.get();
+        LostItemOfferSelector.Mode mode = WanderingCollectorConfig.LOST_ITEM_OFFER_SELECTION.get();
+        SplittableRandom random = LostItemOfferSelector.getRandom((ServerLevel) trader.level());
+        List<UUID> entryIds = new ArrayList<>();
+
+        List<MerchantOffer> lostItemOffers = LootPersistenceManager.computePlayerLoot(player.getServer(), playerUUID, playerLoot -> {
+            long buildStart = ModMetrics.startTimer();
+            TraderOfferEvent offerEvent = new TraderOfferEvent();
+            offerEvent.begin();
+            List<MerchantOffer> entryOffers = new ArrayList<>();
+            for (LootEntry entry : LostItemOfferSelector.select(playerLoot.getEntryList(), probability, maxOffers, mode, random)) {
+                entryIds.add(entry.getId());
+                entryOffers.add(generateCustomMerchantOffer(entry));
             }
+            TraderOfferCache.put(trader.getUUID(), playerUUID, playerLoot, entryIds, entryOffers);
+            ModMetrics.stopTimer(ModMetrics.OFFER_BUILD_TIME, buildStart);
+            commitOfferEvent(offerEvent, playerUUID, trader, true, playerLoot.size(), entryOffers.size());
+            return entryOffers;
+        });
+        offers.addAll(lostItemOffers);
+        writeTradeLostItemIdsToNbt(playerUUID, trader, entryIds);
+    }
+
+    /**
+     * Commits a trader offer event if JFR is recording it.
+     *
+     * @param offerEvent       The started offer event.
+     * @param playerUUID       The UUID of the player interacting with the trader.
+     * @param trader           The Wandering Trader.
+     * @param firstInteraction Whether the offers were selected for the first time.
+     * @param ledgerEntries    The number of entries in the player's loot.
+     * @param offers           The number of offers built.
+     */
+    private static void commitOfferEvent(TraderOfferEvent offerEvent, UUID playerUUID, WanderingTrader trader,
+                                         boolean firstInteraction, int ledgerEntries, int offers) {
+        offerEvent.end();
+        if (offerEvent.shouldCommit()) {
+            offerEvent.player = playerUUID.toString();
+            offerEvent.trader = trader.getStringUUID();
+            offerEvent.firstInteraction = firstInteraction;
+            offerEvent.ledgerEntries = ledgerEntries;
+            offerEvent.offers = offers;
+            offerEvent.commit();
         }
-        playerTrades.put(playerUUID.toString(), stackTags);
-        traderPersistentData.put(ModConstants.TRADER_PLAYER_TRADES, playerTrades);
     }
 
     /**
-     * Generates a custom MerchantOffer based on the given ItemStack.
+     * Generates a custom MerchantOffer based on the given loot entry.
      *
-     * @param stack The ItemStack for which to generate the offer.
-     * @return A MerchantOffer created based on the stack's value.
+     * @param entry The loot entry for which to generate the offer.
+     * @return A MerchantOffer created based on the entry's value.
      */
-    private static MerchantOffer generateCustomMerchantOffer(ItemStack stack) {
-        int price = StackPriceCalculator.getStackPrice(stack);
+    private static MerchantOffer generateCustomMerchantOffer(LootEntry entry) {
+        ItemStack stack = entry.getStack();
+        int price = entry.getPrice();
         int emeraldBlocks = price > 64 ? Math.floorDiv(price, 9) : 0;
         int emeralds = price > 64 ? price % 9 : price;
 
@@ -185,7 +367,7 @@ public class WanderingTraderHelper {
             emeralds = Math.min(emeralds, 64);
         }
 
-        ItemStack offerStack = stack.isStackable() ? new ItemStack(stack.getItem(), stack.getCount()) : stack;
+        ItemStack offerStack = stack.isStackable() ? new ItemStack(stack.getItem(), stack.getCount()) : stack.copy();
 
         return new MerchantOffer(
                 new ItemCost(emeraldBlocks > 0 ? Items.EMERALD_BLOCK : Items.EMERALD, emeraldBlocks > 0 ? emeraldBlocks : emeralds),
@@ -196,23 +378,4 @@ public class WanderingTraderHelper {
                 0.05F
         );
     }
-
-    /**
-     * Removes expired items from the player's loot list.
-     *
-     * @param list     The list of ItemStacks to check for expiration.
-     * @param gameTime The current game time in ticks.
-     */
-    private static void removeExpiredItems(List<ItemStack> list, Long gameTime) {
-        Iterator<ItemStack> iterator = list.iterator();
-
-        while (iterator.hasNext()) {
-            ItemStack stack = iterator.next();
-            Long expirationTime = CustomLootDataUtil.getStackExpirationTime(stack);
-            Long itemDisposalTime = WanderingCollectorConfig.ITEM_DISPOSAL_TIME.get();
-            if (expirationTime != null && (gameTime > (expirationTime + itemDisposalTime) || itemDisposalTime == 0)) {
-                iterator.remove();
-            }
-        }
-    }
 }
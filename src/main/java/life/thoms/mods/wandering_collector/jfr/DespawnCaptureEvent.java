@@ -0,0 +1,47 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event: despawned stacks of a player added to their loot at the end of a tick.
+ */
+@Name("wandering_collector.DespawnCapture")
+@Label("Despawn Capture")
+@Category({"Wandering Collector", "Loot"})
+@Description("Despawned stacks of a player added to their loot at the end of a tick.")
+@StackTrace(false)
+public class DespawnCaptureEvent extends Event {
+
+    @Label("Player")
+    @Description("UUID of the player who lost the stacks")
+    public String player;
+
+    @Label("Captures")
+    @Description("Number of queued captures processed")
+    public int captures;
+
+    @Label("Ledger Entries")
+    @Description("Number of entries in the player's loot afterwards")
+    public int ledgerEntries;
+}
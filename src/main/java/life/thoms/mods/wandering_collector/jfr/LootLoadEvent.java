@@ -0,0 +1,49 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event: a player's loot read from disk and decoded.
+ */
+@Name("wandering_collector.LootLoad")
+@Label("Loot Load")
+@Category({"Wandering Collector", "Persistence"})
+@Description("A player's loot read from disk and decoded.")
+@StackTrace(false)
+public class LootLoadEvent extends Event {
+
+    @Label("Player")
+    @Description("UUID of the player whose loot is read")
+    public String player;
+
+    @Label("Entries")
+    @Description("Number of loot entries decoded")
+    public int entries;
+
+    @Label("Bytes Read")
+    @Description("Size of the read file, in bytes")
+    @DataAmount
+    public long bytesRead;
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event: a stackable stack merged into a player's loot or split into new entries.
+ */
+@Name("wandering_collector.StackMerge")
+@Label("Stack Merge")
+@Category({"Wandering Collector", "Loot"})
+@Description("A stackable stack merged into a player's loot or split into new entries.")
+@StackTrace(false)
+public class StackMergeEvent extends Event {
+
+    @Label("Player")
+    @Description("UUID of the player who owns the loot")
+    public String player;
+
+    @Label("Item")
+    @Description("Item of the stack")
+    public String item;
+
+    @Label("Count")
+    @Description("Number of items in the stack")
+    public int count;
+
+    @Label("Merged Entries")
+    @Description("Number of existing entries the stack was merged into")
+    public int mergedEntries;
+
+    @Label("New Entries")
+    @Description("Number of entries created for the rest of the stack")
+    public int newEntries;
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event: offered loot entry ids read from a Wandering Trader's persistent data.
+ */
+@Name("wandering_collector.TraderNbtRead")
+@Label("Trader NBT Read")
+@Category({"Wandering Collector", "Trader"})
+@Description("Offered loot entry ids read from a Wandering Trader's persistent data.")
+@StackTrace(false)
+public class TraderNbtReadEvent extends Event {
+
+    @Label("Player")
+    @Description("UUID of the player whose offers are read")
+    public String player;
+
+    @Label("Trader")
+    @Description("UUID of the trader")
+    public String trader;
+
+    @Label("Entry Ids")
+    @Description("Number of entry ids read")
+    public int entryIds;
+
+    @Label("Legacy Format")
+    @Description("Whether the ids were stored as a compound of stacks")
+    public boolean legacyFormat;
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event: lost item offers built by a Wandering Trader for a player.
+ */
+@Name("wandering_collector.TraderOffer")
+@Label("Trader Offer Generation")
+@Category({"Wandering Collector", "Trader"})
+@Description("Lost item offers built by a Wandering Trader for a player.")
+@StackTrace(false)
+public class TraderOfferEvent extends Event {
+
+    @Label("Player")
+    @Description("UUID of the player interacting with the trader")
+    public String player;
+
+    @Label("Trader")
+    @Description("UUID of the trader")
+    public String trader;
+
+    @Label("First Interaction")
+    @Description("Whether the offers were selected for the first time rather than rebuilt")
+    public boolean firstInteraction;
+
+    @Label("Ledger Entries")
+    @Description("Number of entries in the player's loot")
+    public int ledgerEntries;
+
+    @Label("Offers")
+    @Description("Number of offers built")
+    public int offers;
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event: a Wandering Trader summoned by ringing a village bell.
+ */
+@Name("wandering_collector.TraderSummon")
+@Label("Trader Summon")
+@Category({"Wandering Collector", "Summoning"})
+@Description("A Wandering Trader summoned by ringing a village bell.")
+@StackTrace(false)
+public class TraderSummonEvent extends Event {
+
+    @Label("Player")
+    @Description("UUID of the player who rang the bell")
+    public String player;
+
+    @Label("Village")
+    @Description("Id of the village")
+    public long village;
+
+    @Label("Outcome")
+    @Description("COOLDOWN, PENDING, SPAWNED or TICKETED")
+    public String outcome;
+
+    @Label("Candidates")
+    @Description("Number of candidate positions tried")
+    public int candidates;
+}
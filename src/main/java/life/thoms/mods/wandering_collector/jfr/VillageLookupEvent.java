@@ -0,0 +1,47 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event: resolution of the village a rung bell belongs to.
+ */
+@Name("wandering_collector.VillageLookup")
+@Label("Village Lookup")
+@Category({"Wandering Collector", "Summoning"})
+@Description("Resolution of the village a rung bell belongs to.")
+@StackTrace(false)
+public class VillageLookupEvent extends Event {
+
+    @Label("Dimension")
+    @Description("Dimension of the bell")
+    public String dimension;
+
+    @Label("Chunk")
+    @Description("Packed position of the bell's chunk")
+    public long chunk;
+
+    @Label("Found")
+    @Description("Whether the bell is in a village")
+    public boolean found;
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.utils;
+
+import com.mojang.logging.LogUtils;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntMaps;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import life.thoms.mods.wandering_collector.config.WanderingCollectorConfig;
+import net.minecraft.core.Holder;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.item.Item;
+import org.slf4j.Logger;
+
+import java.util.List;
+
+/**
+ * Compiled lookup table for the prices configured in VALUABLE_ITEM_IDS and VALUABLE_TAG_IDS.
+ *
+ * <p>Config entries are parsed and tags are resolved once per config or tag reload,
+ * lookups are keyed by the raw item registry id.</p>
+ */
+public class ConfiguredPriceTable {
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final int NO_PRICE = -1;
+
+    private static volatile Int2IntMap prices = emptyTable();
+    private static volatile boolean tagsLoaded = false;
+
+    /**
+     * Retrieves the configured price for the given item.
+     *
+     * @param item The item for which to get the price.
+     * @return The configured price of the item, or -1 if not configured.
+     */
+    public static int getPrice(Item item) {
+        return prices.get(BuiltInRegistries.ITEM.getId(item));
+    }
+
+    /**
+     * Rebuilds the table from the current config values.
+     */
+    public static void rebuild() {
+        prices = compile(WanderingCollectorConfig.VALUABLE_ITEM_IDS.get(), WanderingCollectorConfig.VALUABLE_TAG_IDS.get());
+    }
+
+    /**
+     * Marks item tags as bound and rebuilds the table so tag entries resolve to their members.
+     */
+    public static void onTagsLoaded() {
+        tagsLoaded = true;
+        rebuild();
+    }
+
+    /**
+     * Compiles the given item and tag entries into a price table.
+     *
+     * <p>Item entries take precedence over tag entries and earlier entries over later ones,
+     * the same order the entries used to be checked in. Malformed or unknown entries are logged and skipped.</p>
+     *
+     * @param itemIds The item entries in "namespace:path/price" format.
+     * @param tagIds  The tag entries in "namespace:path/price" format.
+     * @return A read-only map from raw item registry id to price, returning -1 for unconfigured items.
+     */
+    public static Int2IntMap compile(List<? extends String> itemIds, List<? extends String> tagIds) {
+        Int2IntOpenHashMap table = new Int2IntOpenHashMap();
+        table.defaultReturnValue(NO_PRICE);
+
+        for (String entry : itemIds) {
+            ResourceLocation id = parseId(entry, "VALUABLE_ITEM_IDS");
+            int price = parsePrice(entry, "VALUABLE_ITEM_IDS");
+            if (id == null || price == NO_PRICE) continue;
+
+            if (!BuiltInRegistries.ITEM.containsKey(id)) {
+                LOGGER.warn("Ignoring VALUABLE_ITEM_IDS entry \"{}\": unknown item {}", entry, id);
+                continue;
+            }
+            table.putIfAbsent(BuiltInRegistries.ITEM.getId(BuiltInRegistries.ITEM.get(id)), price);
+        }
+
+        for (String entry : tagIds) {
+            ResourceLocation id = parseId(entry, "VALUABLE_TAG_IDS");
+            int price = parsePrice(entry, "VALUABLE_TAG_IDS");
+            if (id == null || price == NO_PRICE) continue;
+
+            TagKey<Item> tag = TagKey.create(Registries.ITEM, id);
+            if (tagsLoaded && BuiltInRegistries.ITEM.getTag(tag).isEmpty()) {
+                LOGGER.warn("Ignoring VALUABLE_TAG_IDS entry \"{}\": unknown item tag {}", entry, id);
+                continue;
+            }
+            for (Holder<Item> holder : BuiltInRegistries.ITEM.getTagOrEmpty(tag)) {
+                table.putIfAbsent(BuiltInRegistries.ITEM.getId(holder.value()), price);
+            }
+        }
+
+        return Int2IntMaps.unmodifiable(table);
+    }
+
+    /**
+     * Parses the resource location part of a config entry.
+     *
+     * @param entry The config entry.
+     * @param list  The name of the config list, used for reporting.
+     * @return The parsed resource location, or null if the entry is malformed.
+     */
+    private static ResourceLocation parseId(String entry, String list) {
+        String[] values = entry.split("/");
+        if (values.length != 2) {
+            LOGGER.warn("Ignoring {} entry \"{}\": expected format namespace:path/price", list, entry);
+            return null;
+        }
+        ResourceLocation id = ResourceLocation.tryParse(values[0]);
+        if (id == null) {
+            LOGGER.warn("Ignoring {} entry \"{}\": invalid id {}", list, entry, values[0]);
+        }
+        return id;
+    }
+
+    /**
+     * Parses the price part of a config entry.
+     *
+     * @param entry The config entry.
+     * @param list  The name of the config list, used for reporting.
+     * @return The parsed price, or -1 if the entry is malformed.
+     */
+    private static int parsePrice(String entry, String list) {
+        String[] values = entry.split("/");
+        if (values.length != 2) return NO_PRICE;
+        try {
+            int price = Integer.parseInt(values[1]);
+            if (price >= 0) return price;
+        } catch (NumberFormatException ignored) {}
+        LOGGER.warn("Ignoring {} entry \"{}\": invalid price {}", list, entry, values[1]);
+        return NO_PRICE;
+    }
+
+    /**
+     * Creates the empty table used until the config has been loaded.
+     *
+     * @return An empty read-only table returning -1 for every item.
+     */
+    private static Int2IntMap emptyTable() {
+        Int2IntOpenHashMap table = new Int2IntOpenHashMap();
+        table.defaultReturnValue(NO_PRICE);
+        return Int2IntMaps.unmodifiable(table);
+    }
+}
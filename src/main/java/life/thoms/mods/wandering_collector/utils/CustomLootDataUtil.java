@@ -17,15 +17,12 @@
 package life.thoms.mods.wandering_collector.utils;
 
 import life.thoms.mods.wandering_collector.constants.ModConstants;
-import net.minecraft.core.component.DataComponentPatch;
 import net.minecraft.core.component.DataComponents;
-import net.minecraft.core.component.TypedDataComponent;
 import net.minecraft.nbt.CompoundTag;
-import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.component.CustomData;
 
-import java.util.*;
+import java.util.UUID;
 
 /**
  * Utility class for handling custom data associated with ItemStacks.
@@ -39,14 +36,9 @@ public class CustomLootDataUtil {
      * @return The UUID associated with the ItemStack, or null if not found.
      */
     public static UUID getStackUniqueIdentifier(ItemStack stack) {
-        DataComponentPatch dataComponentPatch = stack.getComponentsPatch();
-        Optional<? extends CustomData> customData = dataComponentPatch.get(DataComponents.CUSTOM_DATA);
-
-        if (customData.isPresent()) {
-            CompoundTag dataTag = customData.get().copyTag();
-            if (dataTag.contains(ModConstants.STACK_UUID)) {
-                return dataTag.getUUID(ModConstants.STACK_UUID);
-            }
+        CompoundTag dataTag = readCustomData(stack);
+        if (dataTag != null && dataTag.hasUUID(ModConstants.STACK_UUID)) {
+            return dataTag.getUUID(ModConstants.STACK_UUID);
         }
         return null;
     }
@@ -58,11 +50,8 @@ public class CustomLootDataUtil {
      * @return The expiration time as a Long, or null if not found.
      */
     public static Long getStackExpirationTime(ItemStack stack) {
-        DataComponentPatch dataComponentPatch = stack.getComponentsPatch();
-        Optional<? extends CustomData> customData = dataComponentPatch.get(DataComponents.CUSTOM_DATA);
-
-        if (customData.isPresent()) {
-            CompoundTag dataTag = customData.get().copyTag();
+        CompoundTag dataTag = readCustomData(stack);
+        if (dataTag != null) {
             return dataTag.getLong(ModConstants.STACK_DISPOSAL_TIME);
         }
         return null;
@@ -70,81 +59,56 @@ public class CustomLootDataUtil {
 
     /**
      * Adds custom data to the given ItemStack, including a unique identifier and an expiration time.
+     * Custom data already on the stack is kept.
      *
-     * @param stack    The ItemStack to which to add custom data.
-     * @param gameTime The current game time to set as the expiration time.
+     * @param stack                 The ItemStack to which to add custom data.
+     * @param stackUniqueIdentifier The unique identifier to set on the ItemStack.
+     * @param gameTime              The current game time to set as the expiration time.
      * @return The ItemStack with the added custom data.
      */
-    public static ItemStack addStackCustomData(ItemStack stack, Long gameTime) {
-        CompoundTag stackDataTag = new CompoundTag();
-        stackDataTag.putUUID(ModConstants.STACK_UUID, UUID.randomUUID());
-        stackDataTag.putLong(ModConstants.STACK_DISPOSAL_TIME, gameTime);
-        TypedDataComponent<CustomData> comp =
-                new TypedDataComponent<>(DataComponents.CUSTOM_DATA, CustomData.of(stackDataTag));
-        DataComponentPatch patch = DataComponentPatch.builder().set(comp).build();
-        stack.applyComponents(patch);
+    public static ItemStack addStackCustomData(ItemStack stack, UUID stackUniqueIdentifier, long gameTime) {
+        CustomData.update(DataComponents.CUSTOM_DATA, stack, stackDataTag -> {
+            stackDataTag.putUUID(ModConstants.STACK_UUID, stackUniqueIdentifier);
+            stackDataTag.putLong(ModConstants.STACK_DISPOSAL_TIME, gameTime);
+        });
         return stack;
     }
 
     /**
-     * Retrieves the owner of the given ItemStack.
+     * Retrieves the owner of the given ItemStack, written to stacks dropped on death by earlier versions.
      *
      * @param stack The ItemStack for which to retrieve the owner.
      * @return The UUID of the owner, or null if not found.
      */
     public static UUID getStackOwner(ItemStack stack) {
-        DataComponentPatch dataComponentPatch = stack.getComponentsPatch();
-        Optional<? extends CustomData> customData = dataComponentPatch.get(DataComponents.CUSTOM_DATA);
-
-        if (customData.isPresent()) {
-            CompoundTag dataTag = customData.get().copyTag();
-            if (dataTag.contains(ModConstants.STACK_OWNER)) {
-                return dataTag.getUUID(ModConstants.STACK_OWNER);
-            }
+        CompoundTag dataTag = readCustomData(stack);
+        if (dataTag != null && dataTag.hasUUID(ModConstants.STACK_OWNER)) {
+            return dataTag.getUUID(ModConstants.STACK_OWNER);
         }
         return null;
     }
 
     /**
-     * Sets the owner of the given ItemStack to the specified player.
+     * Checks if the given ItemStack may carry an owner, without decoding its custom data.
      *
-     * @param stack  The ItemStack for which to set the owner.
-     * @param player The Player who will be set as the owner.
+     * @param stack The ItemStack to check.
+     * @return True if the ItemStack has custom data, false if it certainly has no owner.
      */
-    public static void setStackOwner(ItemStack stack, Player player) {
-        CompoundTag stackDataTag = new CompoundTag();
-        stackDataTag.putUUID(ModConstants.STACK_OWNER, player.getUUID());
-        TypedDataComponent<CustomData> comp =
-                new TypedDataComponent<>(DataComponents.CUSTOM_DATA, CustomData.of(stackDataTag));
-        DataComponentPatch patch = DataComponentPatch.builder().set(comp).build();
-        stack.applyComponents(patch);
+    public static boolean mayHaveStackOwner(ItemStack stack) {
+        return stack.has(DataComponents.CUSTOM_DATA);
     }
 
     /**
-     * Retrieves the ItemStack from a list based on its unique identifier.
+     * Reads the custom data of the given ItemStack without copying it.
      *
-     * @param stackUniqueIdentifier The unique identifier of the ItemStack to retrieve.
-     * @param stackList            The list of ItemStacks to search through.
-     * @return The matching ItemStack, or null if not found.
-     */
-    public static ItemStack getStackFromList(UUID stackUniqueIdentifier, List<ItemStack> stackList) {
-        if (stackUniqueIdentifier != null && stackList != null) {
-            for (ItemStack stackFromPlayerLoot : stackList) {
-                UUID stackUniqueIdentifierFromList = getStackUniqueIdentifier(stackFromPlayerLoot);
-                if (stackUniqueIdentifier.equals(stackUniqueIdentifierFromList)) return stackFromPlayerLoot;
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Checks if the unique identifier exists in the provided list of ItemStacks.
+     * <p>The returned tag is shared with the stack and must not be modified.</p>
      *
-     * @param stackUniqueIdentifier The unique identifier to search for.
-     * @param stackList            The list of ItemStacks to check against.
-     * @return True if the identifier is found in the list, false otherwise.
+     * @param stack The ItemStack whose custom data to read.
+     * @return The custom data tag, or null if the stack has no custom data.
      */
-    public static boolean isUniqueIdentifierInList(UUID stackUniqueIdentifier, List<ItemStack> stackList) {
-        return getStackFromList(stackUniqueIdentifier, stackList) != null;
+    @SuppressWarnings("deprecation")
+    private static CompoundTag readCustomData(ItemStack stack) {
+        CustomData customData = stack.get(DataComponents.CUSTOM_DATA);
+        return customData != null ? customData.getUnsafe() : null;
     }
 }
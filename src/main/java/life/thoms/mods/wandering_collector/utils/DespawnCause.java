@@ -0,0 +1,58 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.utils;
+
+import life.thoms.mods.wandering_collector.config.WanderingCollectorConfig;
+
+/**
+ * The reasons an item entity can leave a level, as classified by {@link ItemEntityUtil#classifyRemoval}.
+ */
+public enum DespawnCause {
+    /** The item was unloaded with its chunk or changed dimension, it still exists. */
+    UNLOADED,
+    /** The item was merged into another item entity or picked up, its stack is empty. */
+    MERGED,
+    /** The item reached the end of its lifespan. */
+    EXPIRED,
+    /** The item fell into the void. */
+    VOID,
+    /** The item burned in fire or lava. */
+    BURNED,
+    /** The item was destroyed by damage, such as a cactus or an explosion. */
+    DESTROYED,
+    /** The item was killed, such as by the /kill command. */
+    KILLED,
+    /** The item was discarded for another reason, such as by another mod. */
+    OTHER;
+
+    /**
+     * Checks if items removed for this cause should be added to their owner's loot, according to the config.
+     *
+     * @return True if the item should be captured, false otherwise.
+     */
+    public boolean isCaptured() {
+        return switch (this) {
+            case UNLOADED, MERGED -> false;
+            case EXPIRED -> WanderingCollectorConfig.CAPTURE_EXPIRED_ITEMS.get();
+            case VOID -> WanderingCollectorConfig.CAPTURE_VOID_ITEMS.get();
+            case BURNED -> WanderingCollectorConfig.CAPTURE_BURNED_ITEMS.get();
+            case DESTROYED -> WanderingCollectorConfig.CAPTURE_DESTROYED_ITEMS.get();
+            case KILLED -> WanderingCollectorConfig.CAPTURE_KILLED_ITEMS.get();
+            case OTHER -> WanderingCollectorConfig.CAPTURE_OTHER_REMOVED_ITEMS.get();
+        };
+    }
+}
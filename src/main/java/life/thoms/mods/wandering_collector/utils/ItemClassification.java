@@ -0,0 +1,72 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.utils;
+
+/**
+ * Precomputed description of an item, used to filter and price its stacks without inspecting the item again.
+ *
+ * @param category   The category of the item.
+ * @param priceUnits The price of the item in multiples of BASE_PRICE_OF_LOST_ITEM_IN_TRADE,
+ *                   per item if the category is priced per item, otherwise for the whole stack.
+ */
+public record ItemClassification(Category category, int priceUnits) {
+
+    /**
+     * Categories of items, in the order they used to be checked in.
+     *
+     * <p>Weapons, armor and tools only get their category if they are made of a valuable tier or material,
+     * lower tiers are classified as {@link #OTHER}.</p>
+     */
+    public enum Category {
+        EXCLUDED(false, true),
+        ENCHANTED_BOOK(true, false),
+        WEAPON(true, false),
+        ARMOR(true, false),
+        TOOL(true, false),
+        FISHING_ROD(true, false),
+        POTION(true, true),
+        VALUABLE_BLOCK(true, true),
+        VALUABLE_INGOT(true, true),
+        OTHER(false, true);
+
+        private final boolean valuable;
+        private final boolean pricedPerItem;
+
+        Category(boolean valuable, boolean pricedPerItem) {
+            this.valuable = valuable;
+            this.pricedPerItem = pricedPerItem;
+        }
+
+        /**
+         * Checks if items of this category are valuable regardless of enchantments or configured prices.
+         *
+         * @return True if the category is valuable, false otherwise.
+         */
+        public boolean isValuable() {
+            return valuable;
+        }
+
+        /**
+         * Checks if the price of this category is multiplied by the stack count.
+         *
+         * @return True if the category is priced per item, false if it is priced per stack.
+         */
+        public boolean isPricedPerItem() {
+            return pricedPerItem;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.utils;
+
+import life.thoms.mods.wandering_collector.utils.ItemClassification.Category;
+import net.minecraft.core.Holder;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.item.*;
+
+/**
+ * Lookup table classifying every registered item, indexed by raw item registry id.
+ *
+ * <p>Items are classified once after the registries are frozen, so filtering and pricing a stack
+ * is a single array load. Items missing from the table, such as before it is built, are classified on demand.</p>
+ */
+public class ItemClassificationTable {
+
+    private static final ItemClassification EXCLUDED = new ItemClassification(Category.EXCLUDED, 1);
+    private static final ItemClassification ENCHANTED_BOOK = new ItemClassification(Category.ENCHANTED_BOOK, 1);
+    private static final ItemClassification RANGED_WEAPON = new ItemClassification(Category.WEAPON, 5);
+    private static final ItemClassification ELYTRA = new ItemClassification(Category.ARMOR, 20);
+    private static final ItemClassification FISHING_ROD = new ItemClassification(Category.FISHING_ROD, 0);
+    private static final ItemClassification POTION = new ItemClassification(Category.POTION, 1);
+    private static final ItemClassification OTHER = new ItemClassification(Category.OTHER, 1);
+    private static final ItemClassification OTHER_BLOCK = new ItemClassification(Category.OTHER, 9);
+
+    private static volatile ItemClassification[] classifications = new ItemClassification[0];
+
+    /**
+     * Retrieves the classification of the given item.
+     *
+     * @param item The item to look up.
+     * @return The classification of the item.
+     */
+    public static ItemClassification get(Item item) {
+        ItemClassification[] table = classifications;
+        int id = BuiltInRegistries.ITEM.getId(item);
+        if (id >= 0 && id < table.length) {
+            return table[id];
+        }
+        return classify(item);
+    }
+
+    /**
+     * Classifies every registered item, used once the registries are frozen.
+     */
+    public static void rebuild() {
+        ItemClassification[] table = new ItemClassification[BuiltInRegistries.ITEM.size()];
+        for (Item item : BuiltInRegistries.ITEM) {
+            int id = BuiltInRegistries.ITEM.getId(item);
+            if (id >= 0 && id < table.length) {
+                table[id] = classify(item);
+            }
+        }
+        for (int id = 0; id < table.length; id++) {
+            if (table[id] == null) {
+                table[id] = OTHER;
+            }
+        }
+        classifications = table;
+    }
+
+    /**
+     * Classifies a single item.
+     *
+     * @param item The item to classify.
+     * @return The classification of the item.
+     */
+    private static ItemClassification classify(Item item) {
+        if (item == Items.EMERALD || item == Items.AIR) {
+            return EXCLUDED;
+        }
+        if (item instanceof EnchantedBookItem) {
+            return ENCHANTED_BOOK;
+        }
+
+        if (item instanceof SwordItem sword) {
+            if (isValuableTier(sword.getTier())) {
+                return new ItemClassification(Category.WEAPON, sword.getTier().equals(Tiers.NETHERITE) ? 4 : 2);
+            }
+        } else if (item instanceof BowItem || item instanceof CrossbowItem || item instanceof TridentItem) {
+            return RANGED_WEAPON;
+        }
+
+        if (item instanceof ElytraItem) {
+            return ELYTRA;
+        }
+        if (item instanceof ArmorItem armor && !(item instanceof AnimalArmorItem) && isValuableMaterial(armor.getMaterial())) {
+            int materialsPerArmor = switch (armor.getEquipmentSlot()) {
+                case HEAD -> 5;
+                case CHEST -> 8;
+                case LEGS -> 7;
+                case FEET -> 4;
+                default -> 0;
+            };
+            return new ItemClassification(Category.ARMOR, armor.getMaterial().equals(ArmorMaterials.NETHERITE)
+                    ? materialsPerArmor * 2
+                    : materialsPerArmor);
+        }
+
+        if (item instanceof FishingRodItem) {
+            return FISHING_ROD;
+        }
+        int materialsPerTool = switch (item) {
+            case PickaxeItem ignored -> 3;
+            case AxeItem ignored -> 3;
+            case ShovelItem ignored -> 1;
+            case HoeItem ignored -> 2;
+            default -> 0;
+        };
+        if (materialsPerTool > 0 && isValuableTier(((TieredItem) item).getTier())) {
+            return new ItemClassification(Category.TOOL, ((TieredItem) item).getTier().equals(Tiers.NETHERITE)
+                    ? materialsPerTool * 2
+                    : materialsPerTool);
+        }
+
+        if (item instanceof PotionItem) {
+            return POTION;
+        }
+        if (item == Items.DIAMOND_BLOCK) {
+            return new ItemClassification(Category.VALUABLE_BLOCK, 9);
+        }
+        if (item == Items.NETHERITE_BLOCK) {
+            return new ItemClassification(Category.VALUABLE_BLOCK, 18);
+        }
+        if (item == Items.DIAMOND) {
+            return new ItemClassification(Category.VALUABLE_INGOT, 1);
+        }
+        if (item == Items.NETHERITE_INGOT) {
+            return new ItemClassification(Category.VALUABLE_INGOT, 2);
+        }
+        return item instanceof BlockItem ? OTHER_BLOCK : OTHER;
+    }
+
+    /**
+     * Checks if a weapon or tool tier is valuable.
+     *
+     * @param tier The tier to check.
+     * @return True if the tier is above iron and gold, false otherwise.
+     */
+    private static boolean isValuableTier(Tier tier) {
+        return !(tier.equals(Tiers.WOOD) || tier.equals(Tiers.STONE) ||
+                tier.equals(Tiers.IRON) || tier.equals(Tiers.GOLD));
+    }
+
+    /**
+     * Checks if an armor material is valuable.
+     *
+     * @param material The material to check.
+     * @return True if the material is above leather, iron and gold, false otherwise.
+     */
+    private static boolean isValuableMaterial(Holder<ArmorMaterial> material) {
+        return !(material.equals(ArmorMaterials.LEATHER) || material.equals(ArmorMaterials.IRON) ||
+                material.equals(ArmorMaterials.GOLD));
+    }
+}
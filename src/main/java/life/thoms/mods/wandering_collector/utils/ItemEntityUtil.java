@@ -16,6 +16,9 @@
 
 package life.thoms.mods.wandering_collector.utils;
 
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.item.ItemEntity;
 
 /**
@@ -23,16 +26,59 @@ import net.minecraft.world.entity.item.ItemEntity;
  */
 public class ItemEntityUtil {
 
+    private static final IntSet EXPIRING_ITEMS = new IntOpenHashSet();
+
+    /**
+     * Marks an item entity as reaching the end of its lifespan, so its removal later in the tick is classified as expiry.
+     *
+     * @param itemEntity The expiring ItemEntity.
+     */
+    public static void markExpiring(ItemEntity itemEntity) {
+        EXPIRING_ITEMS.add(itemEntity.getId());
+    }
+
     /**
-     * Checks if the given ItemEntity has despawned based on various conditions.
+     * Forgets the expiring item entities of the tick, used at the end of every server tick.
+     */
+    public static void clearExpiring() {
+        if (!EXPIRING_ITEMS.isEmpty()) {
+            EXPIRING_ITEMS.clear();
+        }
+    }
+
+    /**
+     * Classifies why the given ItemEntity left its level.
+     *
+     * <p>The removal reason is checked first, so unloads and dimension changes are rejected without reading
+     * anything else. Discarded items are told apart by expiry, their stack, position and fire or damage state.</p>
      *
-     * @param itemEntity     The ItemEntity to check for despawning.
-     * @param minBuildHeight The minimum build height. If the ItemEntity's Y-coordinate is below this value, it is considered to have despawned.
-     * @return True if the ItemEntity has despawned, false otherwise.
+     * @param itemEntity     The ItemEntity that left its level.
+     * @param minBuildHeight The minimum build height. If the ItemEntity's Y-coordinate is below this value, it fell into the void.
+     * @return The cause of the removal.
      */
-    public static boolean itemEntityHasDespawned(ItemEntity itemEntity, int minBuildHeight) {
-        return (itemEntity.hurtMarked || itemEntity.lifespan == itemEntity.getAge() ||
-                itemEntity.getY() < minBuildHeight ||
-                (itemEntity.isOnFire() || itemEntity.wasOnFire) && !itemEntity.fireImmune());
+    public static DespawnCause classifyRemoval(ItemEntity itemEntity, int minBuildHeight) {
+        Entity.RemovalReason reason = itemEntity.getRemovalReason();
+        if (reason == null || !reason.shouldDestroy()) {
+            return DespawnCause.UNLOADED;
+        }
+        if (itemEntity.getItem().isEmpty()) {
+            return DespawnCause.MERGED;
+        }
+        if (EXPIRING_ITEMS.remove(itemEntity.getId())) {
+            return DespawnCause.EXPIRED;
+        }
+        if (reason == Entity.RemovalReason.KILLED) {
+            return DespawnCause.KILLED;
+        }
+        if (itemEntity.getY() < minBuildHeight) {
+            return DespawnCause.VOID;
+        }
+        if ((itemEntity.isOnFire() || itemEntity.wasOnFire || itemEntity.isInLava()) && !itemEntity.fireImmune()) {
+            return DespawnCause.BURNED;
+        }
+        if (itemEntity.hurtMarked) {
+            return DespawnCause.DESTROYED;
+        }
+        return DespawnCause.OTHER;
     }
 }
@@ -16,12 +16,8 @@
 
 package life.thoms.mods.wandering_collector.utils;
 
-import life.thoms.mods.wandering_collector.config.WanderingCollectorConfig;
-import net.minecraft.core.Holder;
-import net.minecraft.resources.ResourceLocation;
-import net.minecraft.tags.TagKey;
-import net.minecraft.world.item.*;
-import net.minecraftforge.registries.ForgeRegistries;
+import life.thoms.mods.wandering_collector.utils.ItemClassification.Category;
+import net.minecraft.world.item.ItemStack;
 
 /**
  * Utility class for filtering and checking properties of ItemStacks.
@@ -35,7 +31,7 @@ public class ItemFilterUtil {
      * @return True if the ItemStack is excluded, false otherwise.
      */
     public static boolean isExcludedItem(ItemStack stack) {
-        return (Items.EMERALD == stack.getItem() || Items.AIR == stack.getItem());
+        return getCategory(stack) == Category.EXCLUDED;
     }
 
     /**
@@ -55,7 +51,7 @@ public class ItemFilterUtil {
      * @return True if the ItemStack is an enchanted book, false otherwise.
      */
     public static boolean isEnchantedBook(ItemStack stack) {
-        return stack.getItem() instanceof EnchantedBookItem;
+        return getCategory(stack) == Category.ENCHANTED_BOOK;
     }
 
     /**
@@ -65,14 +61,7 @@ public class ItemFilterUtil {
      * @return True if the ItemStack is a weapon, false otherwise.
      */
     public static boolean isWeapon(ItemStack stack) {
-        Item weapon = stack.getItem();
-
-        if (weapon instanceof SwordItem) {
-            Tier tier = (((SwordItem) weapon).getTier());
-            return !(tier.equals(Tiers.WOOD) || tier.equals(Tiers.STONE) ||
-                    tier.equals(Tiers.IRON) || tier.equals(Tiers.GOLD));
-        }
-        return (weapon instanceof BowItem || weapon instanceof CrossbowItem || weapon instanceof TridentItem);
+        return getCategory(stack) == Category.WEAPON;
     }
 
     /**
@@ -82,19 +71,7 @@ public class ItemFilterUtil {
      * @return True if the ItemStack is armor, false otherwise.
      */
     public static boolean isArmor(ItemStack stack) {
-        Item armor = stack.getItem();
-        if (armor instanceof ElytraItem) {
-            return true;
-        }
-        if (armor.toString().contains("wolf_armor") || armor.toString().contains("horse_armor")) {
-            return false;
-        }
-        if (armor instanceof ArmorItem) {
-            Holder<ArmorMaterial> material = ((ArmorItem) armor).getMaterial();
-            return !(material.equals(ArmorMaterials.LEATHER) || material.equals(ArmorMaterials.IRON) ||
-                    material.equals(ArmorMaterials.GOLD));
-        }
-        return false;
+        return getCategory(stack) == Category.ARMOR;
     }
 
     /**
@@ -104,24 +81,8 @@ public class ItemFilterUtil {
      * @return True if the ItemStack is a tool, false otherwise.
      */
     public static boolean isTool(ItemStack stack) {
-        Item tool = stack.getItem();
-
-        if (tool instanceof FishingRodItem) {
-            return true;
-        }
-
-        Tier tier = Tiers.WOOD;
-        switch (tool) {
-            case PickaxeItem pickaxeItem -> tier = pickaxeItem.getTier();
-            case AxeItem axeItem -> tier = axeItem.getTier();
-            case ShovelItem shovelItem -> tier = shovelItem.getTier();
-            case HoeItem hoeItem -> tier = hoeItem.getTier();
-            default -> {
-            }
-        }
-
-        return !(tier.equals(Tiers.WOOD) || tier.equals(Tiers.STONE) ||
-                tier.equals(Tiers.IRON) || tier.equals(Tiers.GOLD));
+        Category category = getCategory(stack);
+        return category == Category.TOOL || category == Category.FISHING_ROD;
     }
 
     /**
@@ -131,8 +92,7 @@ public class ItemFilterUtil {
      * @return True if the ItemStack is a valuable block, false otherwise.
      */
     public static boolean isValuableBlock(ItemStack stack) {
-        Item item = stack.getItem();
-        return (item == Items.DIAMOND_BLOCK || item == Items.NETHERITE_BLOCK);
+        return getCategory(stack) == Category.VALUABLE_BLOCK;
     }
 
     /**
@@ -142,8 +102,7 @@ public class ItemFilterUtil {
      * @return True if the ItemStack is a valuable ingot, false otherwise.
      */
     public static boolean isValuableIngot(ItemStack stack) {
-        Item item = stack.getItem();
-        return (item == Items.DIAMOND || item == Items.NETHERITE_INGOT);
+        return getCategory(stack) == Category.VALUABLE_INGOT;
     }
 
     /**
@@ -153,7 +112,18 @@ public class ItemFilterUtil {
      * @return True if the ItemStack is an effect potion, false otherwise.
      */
     public static boolean isEffectPotion(ItemStack stack) {
-        return stack.getItem() instanceof PotionItem;
+        return getCategory(stack) == Category.POTION;
+    }
+
+    /**
+     * Checks if the item of the given ItemStack is valuable by its category alone,
+     * that is a valuable weapon, armor, tool, potion, block, ingot or an enchanted book.
+     *
+     * @param stack The ItemStack to check.
+     * @return True if the item is valuable by category, false otherwise.
+     */
+    public static boolean isValuableCategory(ItemStack stack) {
+        return getCategory(stack).isValuable();
     }
 
     /**
@@ -163,40 +133,16 @@ public class ItemFilterUtil {
      * @return The price of the ItemStack, or -1 if not configured.
      */
     public static int getConfiguredPrice(ItemStack stack) {
-        if (WanderingCollectorConfig.VALUABLE_ITEM_IDS != null) {
-            for (String itemId : WanderingCollectorConfig.VALUABLE_ITEM_IDS.get()) {
-                String[] values = itemId.split("/");
-                if (values.length == 2) {
-                    String id = values[0];
-                    String priceStr = values[1];
-                    try {
-                        int price = Integer.parseInt(priceStr);
-                        ResourceLocation location = new ResourceLocation(id);
-                        Item valuableItem = ForgeRegistries.ITEMS.getValue(location);
-                        if (valuableItem != null && stack.getItem() == valuableItem) {
-                            return price;
-                        }
-                    } catch (NumberFormatException ignored) {}
-                }
-            }
-        }
+        return ConfiguredPriceTable.getPrice(stack.getItem());
+    }
 
-        if (WanderingCollectorConfig.VALUABLE_TAG_IDS != null) {
-            for (String tagId : WanderingCollectorConfig.VALUABLE_TAG_IDS.get()) {
-                String[] values = tagId.split("/");
-                if (values.length == 2) {
-                    String id = values[0];
-                    String priceStr = values[1];
-                    try {
-                        int price = Integer.parseInt(priceStr);
-                        TagKey<Item> tag = TagKey.create(ForgeRegistries.ITEMS.getRegistryKey(), new ResourceLocation(id));
-                        if (stack.is(tag)) {
-                            return price;
-                        }
-                    } catch (NumberFormatException ignored) {}
-                }
-            }
-        }
-        return -1;
+    /**
+     * Retrieves the category of the item of the given ItemStack from the {@link ItemClassificationTable}.
+     *
+     * @param stack The ItemStack to check.
+     * @return The category of the item.
+     */
+    private static Category getCategory(ItemStack stack) {
+        return ItemClassificationTable.get(stack.getItem()).category();
     }
 }
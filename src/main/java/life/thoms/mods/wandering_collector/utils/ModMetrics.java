@@ -0,0 +1,157 @@
+/*
+ * Copyright 2024 ThomasMTT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package life.thoms.mods.wandering_collector.utils;
+
+import life.thoms.mods.wandering_collector.constants.ModConstants;
+import life.thoms.mods.wandering_collector.data.PlayerLootLedger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the work done by the mod.
+ *
+ * <p>Nothing is recorded unless METRICS_ENABLED is set: the record methods only read a flag while disabled,
+ * and timers are not started.</p>
+ */
+public class ModMetrics {
+
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+
+    private static volatile boolean enabled = false;
+
+    public static final LongAdder DESPAWNS_SEEN = new LongAdder();
+    public static final LongAdder DESPAWNS_FILTERED = new LongAdder();
+    public static final LongAdder DESPAWNS_CAPTURED = new LongAdder();
+    public static final LongAdder STACKABLE_MERGES = new LongAdder();
+    public static final LongAdder STACKABLE_SPLITS = new LongAdder();
+    public static final LongAdder OFFER_CACHE_HITS = new LongAdder();
+
+    public static final LatencyHistogram OFFER_BUILD_TIME = new LatencyHistogram();
+    public static final LatencyHistogram LOOT_LOAD_TIME = new LatencyHistogram();
+    public static final LatencyHistogram LOOT_SAVE_TIME = new LatencyHistogram();
+    public static final LatencyHistogram LOOT_WRITE_TIME = new LatencyHistogram();
+
+    /**
+     * Checks if metrics are being recorded.
+     *
+     * @return True if metrics are enabled, false otherwise.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables recording, used when the config is loaded or changed.
+     *
+     * @param metricsEnabled True to record metrics, false to stop.
+     */
+    public static void setEnabled(boolean metricsEnabled) {
+        enabled = metricsEnabled;
+    }
+
+    /**
+     * Increments a counter if metrics are enabled.
+     *
+     * @param counter The counter to increment.
+     */
+    public static void increment(LongAdder counter) {
+        if (enabled) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * Starts timing an operation if metrics are enabled.
+     *
+     * @return The start of the operation, to pass to {@link #stopTimer}.
+     */
+    public static long startTimer() {
+        return enabled ? System.nanoTime() : NOT_TIMED;
+    }
+
+    /**
+     * Records the duration of an operation if it was timed.
+     *
+     * @param histogram  The histogram to record the duration in.
+     * @param startNanos The value returned by {@link #startTimer} when the operation started.
+     */
+    public static void stopTimer(LatencyHistogram histogram, long startNanos) {
+        if (startNanos != NOT_TIMED) {
+            histogram.recordSince(startNanos);
+        }
+    }
+
+    /**
+     * Clears every counter and histogram.
+     */
+    public static void reset() {
+        for (LongAdder counter : getCounters().values()) {
+            counter.reset();
+        }
+        for (LatencyHistogram histogram : getHistograms().values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Retrieves the counters by metric name.
+     *
+     * @return The counters, in display order.
+     */
+    public static Map<String, LongAdder> getCounters() {
+        Map<String, LongAdder> counters = new LinkedHashMap<>();
+        counters.put("despawns_seen", DESPAWNS_SEEN);
+        counters.put("despawns_filtered", DESPAWNS_FILTERED);
+        counters.put("despawns_captured", DESPAWNS_CAPTURED);
+        counters.put("stackable_merges", STACKABLE_MERGES);
+        counters.put("stackable_splits", STACKABLE_SPLITS);
+        counters.put("offer_cache_hits", OFFER_CACHE_HITS);
+        return counters;
+    }
+
+    /**
+     * Retrieves the histograms by metric name.
+     *
+     * @return The histograms, in display order.
+     */
+    public static Map<String, LatencyHistogram> getHistograms() {
+        Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+        histograms.put("offer_build", OFFER_BUILD_TIME);
+        histograms.put("loot_load", LOOT_LOAD_TIME);
+        histograms.put("loot_save", LOOT_SAVE_TIME);
+        histograms.put("loot_write", LOOT_WRITE_TIME);
+        return histograms;
+    }
+
+    /**
+     * Retrieves the number of entries in the loot of every loaded player.
+     *
+     * <p>Sizes are read without the players' locks, so they may be slightly out of date.</p>
+     *
+     * @return The ledger sizes by player UUID.
+     */
+    public static Map<UUID, Integer> getLedgerSizes() {
+        Map<UUID, Integer> ledgerSizes = new LinkedHashMap<>();
+        for (Map.Entry<UUID, PlayerLootLedger> playerLoot : ModConstants.SERVER_LOOT.entrySet()) {
+            ledgerSizes.put(playerLoot.getKey(), playerLoot.getValue().size());
+        }
+        return ledgerSizes;
+    }
+}